@@ -101,6 +101,25 @@ interface InitOptions {
 
   /** ANDROID ONLY: Check power optimization setting before attempting network in doze mode (default: true) */
   powerOptCheckForNetworkReqEnabled?: boolean;
+
+  /** ANDROID ONLY: Number of silent sign-in results kept in the plugin's token cache, 0 disables it (default: 16) */
+  tokenCacheSize?: number;
+  /** ANDROID ONLY: Stop serving a cached token this many seconds before it expires (default: 300) */
+  tokenExpirySkewSeconds?: number;
+  /** ANDROID ONLY: Refresh cached tokens in the background this many seconds before they expire, 0 disables it (default: 0) */
+  backgroundRefreshSeconds?: number;
+  /** ANDROID ONLY: Random spread, in seconds, added ahead of each background refresh (default: 60) */
+  backgroundRefreshJitterSeconds?: number;
+  /** ANDROID ONLY: How many extra clients to keep for authorities other than the default one (default: 4) */
+  clientPoolSize?: number;
+  /** ANDROID ONLY: Save the account list to app storage for getCachedAccounts() (default: false) */
+  accountSnapshot?: boolean;
+  /** ANDROID ONLY: Claims saved with each account (default: ["name", "preferred_username", "email", "oid", "tid"]) */
+  accountSnapshotClaims?: Array<string>;
+  /** ANDROID ONLY: Warm up the browser for signInInteractive() right after msalInit() (default: false) */
+  prepareInteractive?: boolean;
+  /** ANDROID ONLY: Fail calls with a PluginError object instead of a message string (default: false) */
+  structuredErrors?: boolean;
 }
 
 interface InteractiveSignInOptions {
@@ -114,6 +133,159 @@ interface InteractiveSignInOptions {
   authorizationQueryStringParameters: string;
   otherScopesToAuthorize: string;
   webViewType: string;
+  /** ANDROID ONLY: Authority URL to sign in against instead of the default one */
+  authority: string;
+}
+
+/** ANDROID ONLY: Which parts of a result to send back. Anything left out is included */
+interface ResultFields {
+  /** Include the id token (default: true) */
+  idToken?: boolean;
+  /** Include the account (default: true) */
+  account?: boolean;
+  /** true for every claim, false for none, or the names of the claims to include (default: true) */
+  claims?: boolean | string[];
+}
+
+interface TokenBatchEntry {
+  /** Account id to sign in silently. Ignored in SINGLE account mode */
+  account?: string;
+  /** Defaults to the scopes passed to msalInit() */
+  scopes?: Array<string>;
+  /** Defaults to the default authority passed to msalInit() */
+  authority?: string;
+  fields?: ResultFields;
+}
+
+/** ANDROID ONLY: An HTTP request for authenticatedFetch() */
+interface FetchRequest {
+  /** Must be https, or http to localhost */
+  url: string;
+  /** Default value is "GET" */
+  method?: string;
+  /** Any Authorization header is replaced with the plugin's */
+  headers?: { [name: string]: string };
+  body?: string;
+  /** "base64" if body holds base64-encoded bytes (default: "text") */
+  bodyType?: "text" | "base64";
+  /** "base64" to get the response body back base64-encoded (default: "text") */
+  responseType?: "text" | "base64";
+  /** Scopes of the token to send. Defaults to the scopes passed to msalInit() */
+  scopes?: Array<string>;
+  /** Defaults to the default authority passed to msalInit() */
+  authority?: string;
+  /** In milliseconds (default: 15000) */
+  connectTimeout?: number;
+  /** In milliseconds (default: 30000) */
+  readTimeout?: number;
+}
+
+/** ANDROID ONLY: What authenticatedFetch() succeeds with, whatever the status code */
+interface FetchResponse {
+  status: number;
+  statusText: string;
+  url: string;
+  /** Header names are lower case, repeated headers are joined with ", " */
+  headers: { [name: string]: string };
+  body: string;
+}
+
+/** ANDROID ONLY: Lets a call be cancelled or time out instead of waiting on MSAL forever */
+interface CallOptions {
+  /** Id to pass to cancel(). Should be unique among calls in flight */
+  id?: string;
+  /** Fail the call with "Request timed out after ... ms" if it hasn't finished in this many milliseconds */
+  timeout?: number;
+}
+
+/** ANDROID ONLY: A change to the signed in accounts, pushed to watchAccounts() */
+interface AccountEvent {
+  type: "accountAdded" | "accountRemoved" | "currentAccountChanged";
+  /** The account added or removed, or for currentAccountChanged the new current account, if any */
+  account: AzureADB2CAccount | null;
+  /** For currentAccountChanged, the account that was current before, if any */
+  previousAccount?: AzureADB2CAccount | null;
+}
+
+/** ANDROID ONLY: What calls fail with when structuredErrors is on */
+interface PluginError {
+  code:
+    | "interaction_required"
+    | "no_account"
+    | "user_cancelled"
+    | "transient"
+    | "circuit_open"
+    | "service_error"
+    | "client_error"
+    | "not_initialized"
+    | "init_failed"
+    | "prewarm_failed"
+    | "rejected"
+    | "timeout"
+    | "cancelled"
+    | "invalid_argument"
+    | "plugin_error";
+  message: string;
+  /** MSAL's own error code, when the error came from MSAL */
+  msalCode?: string;
+  /** For circuit_open, how long until the plugin tries the authority again */
+  retryAfterMs?: number;
+}
+
+/** ANDROID ONLY: What getCachedAccounts() returns */
+interface AccountSnapshot {
+  /** true until the accounts have been read from MSAL since the app started */
+  stale: boolean;
+  /** When the accounts were saved, in milliseconds since the epoch, or null if nothing was saved yet */
+  savedAt: number | null;
+  accounts: Array<{
+    id: string;
+    username: string;
+    claims: { [name: string]: any };
+    /** When the account's most recent token expires, in milliseconds since the epoch */
+    tokenExpiresOn?: number;
+  }>;
+}
+
+type TokenBatchResult =
+  | { success: true; result: JwtToken }
+  | { success: false; error: string | PluginError };
+
+interface FileLoggerOptions {
+  /** Default value is "VERBOSE" */
+  logLevel?: "ERROR" | "WARNING" | "INFO" | "VERBOSE";
+  /** Default value is false */
+  containsPII?: boolean;
+  /** Size at which the current log file is rotated (default: 1024) */
+  maxFileSizeKb?: number;
+  /** Number of log files kept, including the current one (default: 5) */
+  maxFiles?: number;
+}
+
+interface LogFile {
+  path: string;
+  size: number;
+}
+
+interface LatencySnapshot {
+  count: number;
+  meanMs: number;
+  p50Ms: number;
+  p90Ms: number;
+  p99Ms: number;
+  maxMs: number;
+}
+
+interface OperationMetrics {
+  successes: number;
+  errors: number;
+  cacheHits: number;
+  /** From the plugin receiving the call to the reply being sent back */
+  total: LatencySnapshot;
+  /** Waiting for a background thread */
+  queueWait: LatencySnapshot;
+  msal: LatencySnapshot;
+  serialization: LatencySnapshot;
 }
 
 interface MSALPlugin {
@@ -122,25 +294,93 @@ interface MSALPlugin {
   signInSilent(
     success: (resp: JwtToken) => any,
     error: (err: any) => any,
-    accountId?: string
+    accountId?: string,
+    fields?: ResultFields,
+    callOptions?: CallOptions,
+    /** ANDROID ONLY: Authority URL to sign in against instead of the default one */
+    authority?: string
+  );
+
+  /** ANDROID ONLY: Make an HTTP request with a token the plugin acquires, without the token reaching JS */
+  authenticatedFetch(
+    success: (resp: FetchResponse) => any,
+    error: (err: any) => any,
+    request: FetchRequest,
+    account?: string,
+    callOptions?: CallOptions
+  );
+
+  /** ANDROID ONLY: Silently acquire several tokens in one call. Results come back in the same order as the entries */
+  acquireTokensBatch(
+    success: (resp: TokenBatchResult[]) => any,
+    error: (err: any) => any,
+    entries: TokenBatchEntry[],
+    callOptions?: CallOptions
   );
 
+  /** ANDROID ONLY: Warm up the browser ahead of signInInteractive(). Succeeds with false if there was nothing to prepare */
+  prepareInteractive(success: (prepared: boolean) => any, error: (err: any) => any, authority?: string);
+
   signInInteractive(
     success: (resp: JwtToken) => any,
     error: (err: any) => any,
-    signInOptions?: Partial<InteractiveSignInOptions>
+    signInOptions?: Partial<InteractiveSignInOptions>,
+    callOptions?: CallOptions
   );
 
   signOut(
     success: (resp: JwtToken) => any,
     error: (err: any) => any,
-    accountId?: any
+    accountId?: any,
+    callOptions?: CallOptions
   );
 
   getAccounts(
     success: (resp: AzureADB2CAccount[]) => any,
+    error: (err: any) => any,
+    fields?: Pick<ResultFields, "claims">,
+    callOptions?: CallOptions
+  );
+
+  /** ANDROID ONLY: The accounts saved at the last run, straight away. Called again with fresh ones if they changed */
+  getCachedAccounts(success: (snapshot: AccountSnapshot) => any, error: (err: any) => any);
+
+  /** ANDROID ONLY: Get an event whenever an account is added or removed, instead of polling getAccounts() */
+  watchAccounts(
+    onEvent: (event: AccountEvent) => any,
     error: (err: any) => any
   );
+
+  /** ANDROID ONLY: Stop every watchAccounts() callback */
+  unwatchAccounts(success: () => any, error: (err: any) => any);
+
+  /** ANDROID ONLY: Fail the call with this id with "Request cancelled". Succeeds with false if it already finished */
+  cancel(
+    success: (cancelled: boolean) => any,
+    error: (err: any) => any,
+    id: string
+  );
+
+  /** ANDROID ONLY: Write MSAL logs to rotated files in the app's private storage */
+  startFileLogger(
+    success: () => any,
+    error: (err: any) => any,
+    options?: FileLoggerOptions
+  );
+
+  /** ANDROID ONLY: List the log files, oldest first, optionally gzipping them into one archive first */
+  getLogFiles(
+    success: (resp: LogFile[]) => any,
+    error: (err: any) => any,
+    compact?: boolean
+  );
+
+  /** ANDROID ONLY: Latency and outcome counts for each action since startup, or since the last reset */
+  getMetrics(
+    success: (resp: { [action: string]: OperationMetrics }) => any,
+    error: (err: any) => any,
+    reset?: boolean
+  );
 }
 
 interface CordovaPlugins {
@@ -0,0 +1,90 @@
+package com.wrobins.cordova.plugin;
+
+import com.microsoft.identity.client.IAccount;
+import com.microsoft.identity.client.exception.MsalException;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory index of the multiple account client's accounts by id and username, so lookups don't
+ * have to read and scan MSAL's account store every time. It is loaded on first use, dropped
+ * whenever accounts are added or removed, and read again when a lookup misses.
+ */
+final class AccountIndex {
+    interface Loader {
+        List<IAccount> load() throws InterruptedException, MsalException;
+    }
+
+    private Snapshot snapshot;
+    private long generation = 0;
+
+    /**
+     * Finds an account by id or username, loading the index first if needed. A miss on an index
+     * loaded earlier reads the store again, since the account may have been added outside the app
+     * (broker, another app) since then.
+     */
+    IAccount find(String key, Loader loader) throws InterruptedException, MsalException {
+        Snapshot current;
+        synchronized (this) {
+            current = this.snapshot;
+        }
+        if (current != null) {
+            IAccount account = current.find(key);
+            if (account != null) {
+                return account;
+            }
+        }
+        return this.load(loader).find(key);
+    }
+
+    /**
+     * Reads every account from MSAL and replaces the index with them.
+     */
+    List<IAccount> reload(Loader loader) throws InterruptedException, MsalException {
+        return this.load(loader).accounts;
+    }
+
+    synchronized void invalidate() {
+        this.generation++;
+        this.snapshot = null;
+    }
+
+    private Snapshot load(Loader loader) throws InterruptedException, MsalException {
+        long loadGeneration;
+        synchronized (this) {
+            loadGeneration = this.generation;
+        }
+        Snapshot loaded = new Snapshot(loader.load());
+        synchronized (this) {
+            // Don't keep a list that was read before accounts last changed
+            if (loadGeneration == this.generation) {
+                this.snapshot = loaded;
+            }
+        }
+        return loaded;
+    }
+
+    private static final class Snapshot {
+        final List<IAccount> accounts;
+        final Map<String, IAccount> byId = new HashMap<>();
+        final Map<String, IAccount> byUsername = new HashMap<>();
+
+        Snapshot(List<IAccount> accounts) {
+            this.accounts = Collections.unmodifiableList(accounts);
+            for (IAccount account : accounts) {
+                this.byId.put(account.getId(), account);
+                if (account.getUsername() != null) {
+                    this.byUsername.put(account.getUsername(), account);
+                }
+            }
+        }
+
+        IAccount find(String key) {
+            IAccount account = this.byId.get(key);
+            return account != null ? account : this.byUsername.get(key);
+        }
+    }
+}
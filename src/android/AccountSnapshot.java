@@ -0,0 +1,285 @@
+package com.wrobins.cordova.plugin;
+
+import com.microsoft.identity.client.IAccount;
+import com.microsoft.identity.client.IAuthenticationResult;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The last account list seen, with a few non-secret claims and when each account's latest token
+ * expires, kept in app-private storage so getCachedAccounts can answer at startup before msalInit
+ * has built a client. Answers are flagged stale until the accounts have been read from MSAL in
+ * this run, and callers who got a stale answer hear again if the real accounts turned out
+ * different. Never holds tokens.
+ */
+final class AccountSnapshot {
+    static final String[] DEFAULT_CLAIMS = {"name", "preferred_username", "email", "oid", "tid"};
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File file;
+    private volatile boolean enabled;
+    private String[] claims = DEFAULT_CLAIMS;
+    private boolean loaded = false;
+    // The accounts array as last saved, or null if there is no snapshot yet
+    private String savedAccounts;
+    private long savedAt;
+    // Whether the accounts have been read from MSAL since the app started
+    private boolean revalidated = false;
+    private final Map<String, Long> tokenExpiries = new HashMap<>();
+    private final List<CallbackContext> waiting = new ArrayList<>();
+
+    AccountSnapshot(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Turns the snapshot on or off for this run. Turning it off deletes what was saved.
+     */
+    void configure(boolean enabled, String[] claims) {
+        List<CallbackContext> released = Collections.emptyList();
+        synchronized (this) {
+            this.load();
+            this.enabled = enabled;
+            if (claims != null && claims.length > 0) {
+                this.claims = claims;
+            }
+            if (!enabled) {
+                this.savedAccounts = null;
+                this.tokenExpiries.clear();
+                this.file.delete();
+                released = new ArrayList<>(this.waiting);
+                this.waiting.clear();
+            }
+        }
+        for (CallbackContext callbackContext : released) {
+            callbackContext.sendPluginResult(new PluginResult(PluginResult.Status.NO_RESULT));
+        }
+    }
+
+    /**
+     * Reads what an earlier run saved. Called on a background thread when the plugin starts, so
+     * nothing on the main thread has to wait on the file.
+     */
+    synchronized void preload() {
+        this.load();
+    }
+
+    /**
+     * Whether anything needs the account list kept up to date. Before msalInit, that's whenever
+     * an earlier run left a snapshot behind, once {@link #preload} has found it.
+     */
+    boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * Sends the saved snapshot. If it's stale, the callback is kept and called once more with the
+     * real accounts, if they differ, once they have been read.
+     */
+    void get(CallbackContext callbackContext) {
+        String json;
+        boolean keepCallback;
+        synchronized (this) {
+            this.load();
+            json = this.encode(!this.revalidated);
+            keepCallback = !this.revalidated && this.enabled;
+            if (keepCallback) {
+                this.waiting.add(callbackContext);
+            }
+        }
+        PluginResult pluginResult = new EncodedResult(PluginResult.Status.OK, json);
+        pluginResult.setKeepCallback(keepCallback);
+        callbackContext.sendPluginResult(pluginResult);
+    }
+
+    /**
+     * Records the accounts just read from MSAL, saving them if they changed, and answers anyone
+     * waiting on revalidation.
+     */
+    void update(List<IAccount> accounts) {
+        if (!this.enabled) {
+            return;
+        }
+        List<CallbackContext> released;
+        String json = null;
+        synchronized (this) {
+            this.load();
+            this.revalidated = true;
+            this.tokenExpiries.keySet().retainAll(ids(accounts));
+            boolean changed = this.save(accounts);
+            if (changed) {
+                json = this.encode(false);
+            }
+            released = new ArrayList<>(this.waiting);
+            this.waiting.clear();
+        }
+        for (CallbackContext callbackContext : released) {
+            callbackContext.sendPluginResult(json != null
+                    ? new EncodedResult(PluginResult.Status.OK, json)
+                    : new PluginResult(PluginResult.Status.NO_RESULT));
+        }
+    }
+
+    /**
+     * Notes when the account's latest token expires. It's only kept in memory until the next
+     * account list is saved, since tokens come back on MSAL's callback thread far more often than
+     * the accounts change.
+     */
+    void tokenAcquired(IAuthenticationResult result) {
+        if (!this.enabled || result.getAccount() == null || result.getExpiresOn() == null) {
+            return;
+        }
+        synchronized (this) {
+            String id = result.getAccount().getId();
+            Long known = this.tokenExpiries.get(id);
+            long expiresOn = result.getExpiresOn().getTime();
+            if (known == null || known < expiresOn) {
+                this.tokenExpiries.put(id, expiresOn);
+            }
+        }
+    }
+
+    private void load() {
+        if (this.loaded) {
+            return;
+        }
+        this.loaded = true;
+        if (!this.file.exists()) {
+            return;
+        }
+        try {
+            JSONObject snapshot = new JSONObject(read(this.file));
+            JSONArray savedAccounts = snapshot.getJSONArray("accounts");
+            // Carried over so the first update doesn't count the missing expiries as a change
+            for (int i = 0; i < savedAccounts.length(); ++i) {
+                JSONObject account = savedAccounts.getJSONObject(i);
+                if (account.has("tokenExpiresOn")) {
+                    this.tokenExpiries.put(account.getString("id"), account.getLong("tokenExpiresOn"));
+                }
+            }
+            this.savedAccounts = savedAccounts.toString();
+            this.savedAt = snapshot.optLong("savedAt", 0);
+            this.enabled = true;
+        } catch (IOException | JSONException e) {
+            e.printStackTrace();
+            this.file.delete();
+        }
+    }
+
+    // Returns whether the accounts differ from what was saved before
+    private boolean save(List<IAccount> accounts) {
+        JsonEncoder encoder = JsonEncoder.obtain();
+        encoder.beginArray();
+        for (IAccount account : accounts) {
+            encoder.beginObject();
+            encoder.name("id").value(account.getId());
+            encoder.name("username").value(account.getUsername());
+            encoder.name("claims").beginObject();
+            Map<String, ?> accountClaims = account.getClaims();
+            if (accountClaims != null) {
+                for (String claim : this.claims) {
+                    if (accountClaims.containsKey(claim)) {
+                        encoder.name(claim).value(accountClaims.get(claim));
+                    }
+                }
+            }
+            encoder.endObject();
+            Long expiresOn = this.tokenExpiries.get(account.getId());
+            if (expiresOn != null) {
+                encoder.name("tokenExpiresOn").value(expiresOn.longValue());
+            }
+            encoder.endObject();
+        }
+        String accountsJson;
+        try {
+            // Normalized the same way as a loaded snapshot, so the two can be compared as strings
+            accountsJson = new JSONArray(encoder.endArray().finish()).toString();
+        } catch (JSONException e) {
+            throw new IllegalStateException(e);
+        }
+        if (accountsJson.equals(this.savedAccounts)) {
+            return false;
+        }
+        this.savedAccounts = accountsJson;
+        this.savedAt = System.currentTimeMillis();
+        try {
+            write(this.file, "{\"savedAt\":" + this.savedAt + ",\"accounts\":" + accountsJson + "}");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return true;
+    }
+
+    private String encode(boolean stale) {
+        JsonEncoder encoder = JsonEncoder.obtain();
+        encoder.beginObject();
+        encoder.name("stale").value(stale);
+        encoder.name("savedAt");
+        if (this.savedAccounts != null) {
+            encoder.value(this.savedAt);
+        } else {
+            encoder.value((String) null);
+        }
+        encoder.name("accounts").raw(this.savedAccounts != null ? this.savedAccounts : "[]");
+        return encoder.endObject().finish();
+    }
+
+    private static List<String> ids(List<IAccount> accounts) {
+        List<String> ids = new ArrayList<>();
+        for (IAccount account : accounts) {
+            ids.add(account.getId());
+        }
+        return ids;
+    }
+
+    private static String read(File file) throws IOException {
+        StringBuilder contents = new StringBuilder();
+        Reader reader = new InputStreamReader(new FileInputStream(file), UTF_8);
+        try {
+            char[] buffer = new char[4096];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                contents.append(buffer, 0, read);
+            }
+        } finally {
+            reader.close();
+        }
+        return contents.toString();
+    }
+
+    // Written next to the snapshot and renamed over it, so a crash can't leave half a file behind
+    private static void write(File file, String contents) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        Writer writer = new OutputStreamWriter(new FileOutputStream(temp), UTF_8);
+        try {
+            writer.write(contents);
+        } finally {
+            writer.close();
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Couldn't replace " + file);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.wrobins.cordova.plugin;
+
+import com.microsoft.identity.client.IAccount;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Pushes account changes to watchAccounts subscribers. Whenever the plugin reads the account list
+ * for any reason it is compared with the last one seen, and accounts that appeared or went away
+ * are reported, so JS doesn't have to poll getAccounts to notice a sign in or sign out made
+ * elsewhere (the broker, another app).
+ */
+final class AccountWatcher {
+    static final String ACCOUNT_ADDED = "accountAdded";
+    static final String ACCOUNT_REMOVED = "accountRemoved";
+    static final String CURRENT_ACCOUNT_CHANGED = "currentAccountChanged";
+
+    private final List<CallbackContext> subscribers = new CopyOnWriteArrayList<>();
+    private final ResultSerializer serializer;
+    // Null until the first account list after someone subscribed, which only sets the baseline
+    private Map<String, IAccount> known;
+
+    AccountWatcher(ResultSerializer serializer) {
+        this.serializer = serializer;
+    }
+
+    void subscribe(CallbackContext callbackContext) {
+        this.subscribers.add(callbackContext);
+        PluginResult pluginResult = new PluginResult(PluginResult.Status.NO_RESULT);
+        pluginResult.setKeepCallback(true);
+        callbackContext.sendPluginResult(pluginResult);
+    }
+
+    /**
+     * Drops every subscriber, telling each one's JS side it won't be called again, and forgets the
+     * accounts seen so the next subscriber starts from a fresh baseline.
+     */
+    void unsubscribeAll() {
+        List<CallbackContext> removed = new ArrayList<>(this.subscribers);
+        this.subscribers.removeAll(removed);
+        synchronized (this) {
+            if (this.subscribers.isEmpty()) {
+                this.known = null;
+            }
+        }
+        for (CallbackContext subscriber : removed) {
+            subscriber.sendPluginResult(new PluginResult(PluginResult.Status.NO_RESULT));
+        }
+    }
+
+    /**
+     * Forgets every subscriber without replying, for when the page they belonged to is gone.
+     */
+    synchronized void clear() {
+        this.subscribers.clear();
+        this.known = null;
+    }
+
+    boolean hasSubscribers() {
+        return !this.subscribers.isEmpty();
+    }
+
+    /**
+     * Compares the given accounts with the last ones seen and sends an event for each difference.
+     * In single account mode the list holds the current account, if any, and a change of it is
+     * also reported as one currentAccountChanged event.
+     */
+    void update(List<IAccount> accounts, boolean singleAccount) {
+        if (this.subscribers.isEmpty()) {
+            return;
+        }
+        Map<String, IAccount> current = new LinkedHashMap<>();
+        for (IAccount account : accounts) {
+            current.put(account.getId(), account);
+        }
+        List<String> events = new ArrayList<>();
+        synchronized (this) {
+            Map<String, IAccount> previous = this.known;
+            this.known = current;
+            if (previous == null) {
+                return;
+            }
+            IAccount removed = null;
+            for (Map.Entry<String, IAccount> entry : previous.entrySet()) {
+                if (!current.containsKey(entry.getKey())) {
+                    removed = entry.getValue();
+                    events.add(this.encode(ACCOUNT_REMOVED, entry.getValue(), null));
+                }
+            }
+            IAccount added = null;
+            for (Map.Entry<String, IAccount> entry : current.entrySet()) {
+                if (!previous.containsKey(entry.getKey())) {
+                    added = entry.getValue();
+                    events.add(this.encode(ACCOUNT_ADDED, entry.getValue(), null));
+                }
+            }
+            if (singleAccount && (added != null || removed != null)) {
+                events.add(this.encode(CURRENT_ACCOUNT_CHANGED, added, removed));
+            }
+        }
+        for (String event : events) {
+            for (CallbackContext subscriber : this.subscribers) {
+                PluginResult pluginResult = new EncodedResult(PluginResult.Status.OK, event);
+                pluginResult.setKeepCallback(true);
+                subscriber.sendPluginResult(pluginResult);
+            }
+        }
+    }
+
+    private String encode(String type, IAccount account, IAccount previousAccount) {
+        JsonEncoder encoder = JsonEncoder.obtain();
+        encoder.beginObject();
+        encoder.name("type").value(type);
+        encoder.name("account");
+        this.writeAccount(encoder, account);
+        if (CURRENT_ACCOUNT_CHANGED.equals(type)) {
+            encoder.name("previousAccount");
+            this.writeAccount(encoder, previousAccount);
+        }
+        return encoder.endObject().finish();
+    }
+
+    private void writeAccount(JsonEncoder encoder, IAccount account) {
+        if (account == null) {
+            encoder.value((String) null);
+        } else {
+            this.serializer.writeAccount(encoder, account, ResultProjection.ALL);
+        }
+    }
+}
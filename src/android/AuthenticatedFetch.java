@@ -0,0 +1,265 @@
+package com.wrobins.cordova.plugin;
+
+import android.util.Base64;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.ProtocolException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * An HTTP request made natively for authenticatedFetch, with the Authorization header filled in
+ * from a token the plugin acquired, so the token never crosses the bridge. HttpURLConnection keeps
+ * connections alive and pools them per host, as long as every response is read to the end.
+ * Redirects are handed back to JS rather than followed, so the token is never sent on to a host
+ * the caller didn't name.
+ */
+final class AuthenticatedFetch {
+    static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 15000;
+    static final int DEFAULT_READ_TIMEOUT_MILLIS = 30000;
+    // What Android's HttpURLConnection will send; anything else would only fail once the token is
+    // in hand
+    private static final List<String> METHODS = Arrays.asList("GET", "POST", "HEAD", "OPTIONS", "PUT", "PATCH", "DELETE", "TRACE");
+
+    private final URL url;
+    private final String method;
+    private final Map<String, String> headers = new LinkedHashMap<>();
+    private final byte[] body;
+    private final boolean base64Response;
+    private final int connectTimeout;
+    private final int readTimeout;
+
+    AuthenticatedFetch(JSONObject options) throws JSONException, MalformedURLException, ProtocolException {
+        this.url = new URL(options.getString("url"));
+        // The token would go out in the clear over http, which is only acceptable on this device
+        if (!"https".equals(this.url.getProtocol()) && !("http".equals(this.url.getProtocol()) && isLoopback(this.url.getHost()))) {
+            throw new MalformedURLException("Only https URLs, or http to localhost, can be fetched");
+        }
+        this.method = options.optString("method", "GET").toUpperCase(Locale.ROOT);
+        if (!METHODS.contains(this.method)) {
+            throw new ProtocolException("Unsupported method " + this.method);
+        }
+        JSONObject headers = options.optJSONObject("headers");
+        if (headers != null) {
+            Iterator<String> names = headers.keys();
+            while (names.hasNext()) {
+                String name = names.next();
+                // The plugin's token is the whole point
+                if (!"authorization".equalsIgnoreCase(name)) {
+                    this.headers.put(name, headers.getString(name));
+                }
+            }
+        }
+        if (options.isNull("body")) {
+            this.body = null;
+        } else if ("base64".equals(options.optString("bodyType"))) {
+            this.body = Base64.decode(options.getString("body"), Base64.NO_WRAP);
+        } else {
+            this.body = options.getString("body").getBytes(Charset.forName("UTF-8"));
+        }
+        this.base64Response = "base64".equals(options.optString("responseType"));
+        this.connectTimeout = options.optInt("connectTimeout", DEFAULT_CONNECT_TIMEOUT_MILLIS);
+        this.readTimeout = options.optInt("readTimeout", DEFAULT_READ_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Makes the request with the given token and replies to the call with the response. A 401
+     * means the API turned down a token MSAL still thought was good, e.g. one revoked early, so
+     * the first one is left unanswered for the caller to try again with a fresh token.
+     *
+     * @return false if the request should be made again with a fresh token
+     */
+    boolean attempt(MsalRequest request, String authorizationHeader, boolean refreshed, LatencyHistogram serialization) {
+        try {
+            final HttpURLConnection connection = this.open(authorizationHeader);
+            request.onAbandoned(new Runnable() {
+                @Override
+                public void run() {
+                    connection.disconnect();
+                }
+            });
+            int status = this.send(connection);
+            if (status == HttpURLConnection.HTTP_UNAUTHORIZED && !refreshed) {
+                discard(connection);
+                return false;
+            }
+            long serializationStartedAt = System.nanoTime();
+            String json = this.encodeResponse(connection);
+            serialization.recordSince(serializationStartedAt);
+            request.successJson(json);
+        } catch (MalformedURLException | ProtocolException e) {
+            // Sending it again won't help
+            request.error(PluginError.from(e));
+        } catch (IOException e) {
+            request.error(new PluginError(PluginError.TRANSIENT, e.getMessage()));
+        }
+        return true;
+    }
+
+    /**
+     * Sets up a connection for the request without connecting yet, so the caller can hold on to
+     * it and disconnect if the call is abandoned.
+     */
+    private HttpURLConnection open(String authorizationHeader) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) this.url.openConnection();
+        connection.setRequestMethod(this.method);
+        connection.setConnectTimeout(this.connectTimeout);
+        connection.setReadTimeout(this.readTimeout);
+        connection.setInstanceFollowRedirects(false);
+        for (Map.Entry<String, String> header : this.headers.entrySet()) {
+            connection.setRequestProperty(header.getKey(), header.getValue());
+        }
+        connection.setRequestProperty("Authorization", authorizationHeader);
+        return connection;
+    }
+
+    /**
+     * Sends the request and waits for the response status.
+     */
+    private int send(HttpURLConnection connection) throws IOException {
+        if (this.body != null) {
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(this.body.length);
+            OutputStream out = connection.getOutputStream();
+            try {
+                out.write(this.body);
+            } finally {
+                out.close();
+            }
+        }
+        return connection.getResponseCode();
+    }
+
+    /**
+     * Reads and throws away the rest of a response that won't be used, so its connection can go
+     * back to the pool.
+     */
+    private static void discard(HttpURLConnection connection) {
+        try {
+            InputStream in = responseStream(connection);
+            if (in != null) {
+                try {
+                    byte[] buffer = new byte[4096];
+                    while (in.read(buffer) != -1) {
+                        // Draining
+                    }
+                } finally {
+                    in.close();
+                }
+            }
+        } catch (IOException e) {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Encodes the response as the JSON sent back to JS, decoding the body straight into the reply
+     * as it comes off the connection.
+     */
+    private String encodeResponse(HttpURLConnection connection) throws IOException {
+        int status = connection.getResponseCode();
+        JsonEncoder encoder = JsonEncoder.obtain();
+        encoder.beginObject();
+        encoder.name("status").value(status);
+        encoder.name("statusText").value(connection.getResponseMessage());
+        encoder.name("url").value(connection.getURL().toString());
+        encoder.name("headers").beginObject();
+        for (Map.Entry<String, List<String>> header : connection.getHeaderFields().entrySet()) {
+            // The status line comes back under a null name
+            if (header.getKey() == null) {
+                continue;
+            }
+            StringBuilder values = new StringBuilder();
+            for (String value : header.getValue()) {
+                if (values.length() > 0) {
+                    values.append(", ");
+                }
+                values.append(value);
+            }
+            encoder.name(header.getKey().toLowerCase(Locale.ROOT)).value(values.toString());
+        }
+        encoder.endObject();
+        encoder.name("body");
+        InputStream in = responseStream(connection);
+        if (in == null) {
+            encoder.value("");
+        } else {
+            try {
+                if (this.base64Response) {
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[8192];
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        bytes.write(buffer, 0, read);
+                    }
+                    encoder.value(Base64.encodeToString(bytes.toByteArray(), Base64.NO_WRAP));
+                } else {
+                    encoder.value(new InputStreamReader(in, charset(connection.getContentType())));
+                }
+            } finally {
+                in.close();
+            }
+        }
+        return encoder.endObject().finish();
+    }
+
+    // Only names that can't resolve anywhere else count, so e.g. 127.example.com doesn't
+    static boolean isLoopback(String host) {
+        if ("localhost".equalsIgnoreCase(host) || "[::1]".equals(host) || "::1".equals(host)) {
+            return true;
+        }
+        String[] octets = host.split("\\.", -1);
+        if (octets.length != 4 || !"127".equals(octets[0])) {
+            return false;
+        }
+        for (String octet : octets) {
+            if (octet.length() == 0 || octet.length() > 3) {
+                return false;
+            }
+            for (int i = 0; i < octet.length(); ++i) {
+                if (octet.charAt(i) < '0' || octet.charAt(i) > '9') {
+                    return false;
+                }
+            }
+            if (Integer.parseInt(octet) > 255) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static InputStream responseStream(HttpURLConnection connection) throws IOException {
+        return connection.getResponseCode() >= 400 ? connection.getErrorStream() : connection.getInputStream();
+    }
+
+    private static Charset charset(String contentType) {
+        if (contentType != null) {
+            for (String parameter : contentType.split(";")) {
+                String[] pair = parameter.trim().split("=", 2);
+                if (pair.length == 2 && "charset".equalsIgnoreCase(pair[0].trim())) {
+                    try {
+                        return Charset.forName(pair[1].trim().replace("\"", ""));
+                    } catch (IllegalArgumentException e) {
+                        break;
+                    }
+                }
+            }
+        }
+        return Charset.forName("UTF-8");
+    }
+}
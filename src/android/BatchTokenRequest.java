@@ -0,0 +1,109 @@
+package com.wrobins.cordova.plugin;
+
+import com.microsoft.identity.client.IAuthenticationResult;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs several silent token acquisitions for one plugin call, a bounded number at a time, and
+ * replies once with a result or error for every entry in the order they were given.
+ */
+final class BatchTokenRequest {
+    interface Entry {
+        void acquire(TokenCallback callback);
+    }
+
+    private final MsalRequest request;
+    private final int maxParallel;
+    private final ResultSerializer serializer;
+    private final List<Entry> entries = new ArrayList<>();
+    private final List<ResultProjection> projections = new ArrayList<>();
+    // Each slot ends up holding the entry's IAuthenticationResult or PluginError
+    private Object[] results;
+    private int next = 0;
+    private int remaining;
+
+    BatchTokenRequest(MsalRequest request, int maxParallel, ResultSerializer serializer) {
+        this.request = request;
+        this.maxParallel = Math.max(1, maxParallel);
+        this.serializer = serializer;
+    }
+
+    void add(Entry entry, ResultProjection projection) {
+        this.entries.add(entry);
+        this.projections.add(projection);
+    }
+
+    void start() {
+        synchronized (this) {
+            this.results = new Object[this.entries.size()];
+            this.remaining = this.entries.size();
+        }
+        if (this.entries.isEmpty()) {
+            this.request.successJson("[]");
+            return;
+        }
+        for (int i = 0; i < this.maxParallel; ++i) {
+            this.launchNext();
+        }
+    }
+
+    private void launchNext() {
+        final int index;
+        synchronized (this) {
+            // Stop starting entries once the call has timed out or been cancelled
+            if (this.next >= this.entries.size() || this.request.isSettled()) {
+                return;
+            }
+            index = this.next++;
+        }
+        this.entries.get(index).acquire(new TokenCallback() {
+            @Override
+            public void success(IAuthenticationResult result) {
+                BatchTokenRequest.this.complete(index, result);
+            }
+
+            @Override
+            public void error(PluginError error) {
+                BatchTokenRequest.this.complete(index, error);
+            }
+        });
+    }
+
+    private void complete(int index, Object entryResult) {
+        boolean done;
+        synchronized (this) {
+            if (this.results[index] != null) {
+                return;
+            }
+            this.results[index] = entryResult;
+            done = --this.remaining == 0;
+        }
+        if (done) {
+            JsonEncoder encoder = JsonEncoder.obtain();
+            encoder.beginArray();
+            for (int i = 0; i < this.results.length; ++i) {
+                encoder.beginObject();
+                if (this.results[i] instanceof IAuthenticationResult) {
+                    encoder.name("success").value(true);
+                    encoder.name("result");
+                    this.serializer.writeAuthResult(encoder, (IAuthenticationResult) this.results[i], this.projections.get(i));
+                } else {
+                    encoder.name("success").value(false);
+                    PluginError error = (PluginError) this.results[i];
+                    encoder.name("error");
+                    if (this.request.usesStructuredErrors()) {
+                        error.writeTo(encoder);
+                    } else {
+                        encoder.value(error.message);
+                    }
+                }
+                encoder.endObject();
+            }
+            this.request.successJson(encoder.endArray().finish());
+        } else {
+            this.launchNext();
+        }
+    }
+}
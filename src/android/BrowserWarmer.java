@@ -0,0 +1,89 @@
+package com.wrobins.cordova.plugin;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.net.Uri;
+
+import androidx.browser.customtabs.CustomTabsClient;
+import androidx.browser.customtabs.CustomTabsServiceConnection;
+import androidx.browser.customtabs.CustomTabsSession;
+
+/**
+ * Gets the Custom Tabs browser ready before an interactive sign in, so the login page doesn't
+ * wait on the browser process starting and on DNS and TLS to the authority once the user taps
+ * sign in. MSAL opens its own tab, but the browser process it warms up and the connections the
+ * prefetch opens are shared with it.
+ */
+final class BrowserWarmer {
+    private final Object lock = new Object();
+    private Context context;
+    private CustomTabsServiceConnection connection;
+    private CustomTabsSession session;
+    // The page to prefetch once the service connects, if it hasn't yet
+    private String pendingUrl;
+
+    /**
+     * Binds to the browser's Custom Tabs service if that hasn't happened yet, and hints that the
+     * given URL is about to be opened. Returns false if there is no browser that supports Custom
+     * Tabs, in which case MSAL falls back to a plain browser or its webview anyway.
+     */
+    boolean prepare(Context context, String url) {
+        synchronized (this.lock) {
+            if (this.session != null) {
+                this.session.mayLaunchUrl(Uri.parse(url), null, null);
+                return true;
+            }
+            this.pendingUrl = url;
+            if (this.connection != null) {
+                return true;
+            }
+            String browserPackage = CustomTabsClient.getPackageName(context, null);
+            if (browserPackage == null) {
+                return false;
+            }
+            CustomTabsServiceConnection connection = new CustomTabsServiceConnection() {
+                @Override
+                public void onCustomTabsServiceConnected(ComponentName name, CustomTabsClient client) {
+                    client.warmup(0);
+                    synchronized (BrowserWarmer.this.lock) {
+                        if (BrowserWarmer.this.connection != this) {
+                            return;
+                        }
+                        BrowserWarmer.this.session = client.newSession(null);
+                        if (BrowserWarmer.this.session != null && BrowserWarmer.this.pendingUrl != null) {
+                            BrowserWarmer.this.session.mayLaunchUrl(Uri.parse(BrowserWarmer.this.pendingUrl), null, null);
+                        }
+                        BrowserWarmer.this.pendingUrl = null;
+                    }
+                }
+
+                @Override
+                public void onServiceDisconnected(ComponentName name) {
+                    // Still bound, so Android reconnects once the browser is running again
+                    synchronized (BrowserWarmer.this.lock) {
+                        if (BrowserWarmer.this.connection == this) {
+                            BrowserWarmer.this.session = null;
+                        }
+                    }
+                }
+            };
+            if (!CustomTabsClient.bindCustomTabsService(context, browserPackage, connection)) {
+                return false;
+            }
+            this.context = context;
+            this.connection = connection;
+            return true;
+        }
+    }
+
+    void shutdown() {
+        synchronized (this.lock) {
+            if (this.connection != null) {
+                this.context.unbindService(this.connection);
+                this.connection = null;
+                this.session = null;
+                this.context = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.wrobins.cordova.plugin;
+
+import com.microsoft.identity.client.IPublicClientApplication;
+import com.microsoft.identity.client.exception.MsalException;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Extra MSAL clients for authorities other than the default one from msalInit, so apps serving
+ * several tenants or B2C policies can switch between them without rebuilding the main client.
+ * Clients are created the first time their authority is asked for and the least recently used one
+ * is dropped once the pool is full.
+ */
+final class ClientPool {
+    interface Factory {
+        IPublicClientApplication create(String authority) throws InterruptedException, MsalException, IOException, JSONException;
+    }
+
+    static final int DEFAULT_MAX_CLIENTS = 4;
+
+    private final LinkedHashMap<String, PooledClient> clients = new LinkedHashMap<String, PooledClient>(8, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PooledClient> eldest) {
+            return this.size() > ClientPool.this.maxClients;
+        }
+    };
+    private int maxClients = DEFAULT_MAX_CLIENTS;
+
+    synchronized void configure(int maxClients) {
+        this.maxClients = Math.max(0, maxClients);
+        while (this.clients.size() > this.maxClients) {
+            this.clients.remove(this.clients.keySet().iterator().next());
+        }
+    }
+
+    synchronized boolean isEnabled() {
+        return this.maxClients > 0;
+    }
+
+    /**
+     * Returns the client for the given authority, creating it first if needed. Callers asking for
+     * the same authority while it is being created wait for that one instead of making their own;
+     * callers asking for other authorities don't wait at all.
+     */
+    IPublicClientApplication get(String authority, Factory factory) throws InterruptedException, MsalException, IOException, JSONException {
+        PooledClient pooled;
+        synchronized (this) {
+            pooled = this.clients.get(authority);
+            if (pooled == null) {
+                pooled = new PooledClient();
+                this.clients.put(authority, pooled);
+            }
+        }
+        synchronized (pooled) {
+            if (pooled.client == null) {
+                pooled.client = factory.create(authority);
+            }
+            return pooled.client;
+        }
+    }
+
+    synchronized int size() {
+        return this.clients.size();
+    }
+
+    synchronized void clear() {
+        this.clients.clear();
+    }
+
+    private static final class PooledClient {
+        IPublicClientApplication client;
+    }
+}
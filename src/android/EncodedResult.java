@@ -0,0 +1,26 @@
+package com.wrobins.cordova.plugin;
+
+import org.apache.cordova.PluginResult;
+
+/**
+ * A plugin result whose JSON message was already encoded with {@link JsonEncoder}, so Cordova
+ * passes it to JS as is instead of serializing a JSONObject tree again.
+ */
+final class EncodedResult extends PluginResult {
+    private final String json;
+
+    EncodedResult(Status status, String json) {
+        super(status);
+        this.json = json;
+    }
+
+    @Override
+    public int getMessageType() {
+        return MESSAGE_TYPE_JSON;
+    }
+
+    @Override
+    public String getMessage() {
+        return this.json;
+    }
+}
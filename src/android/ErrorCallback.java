@@ -0,0 +1,8 @@
+package com.wrobins.cordova.plugin;
+
+/**
+ * Receives the reason a piece of work could not be done.
+ */
+interface ErrorCallback {
+    void error(PluginError error);
+}
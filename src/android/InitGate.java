@@ -0,0 +1,140 @@
+package com.wrobins.cordova.plugin;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tracks whether msalInit has produced a usable client. Calls that arrive while the first init is
+ * still running are queued and replayed once it finishes, or failed with its error. Several inits
+ * can be running at the same time, so queued calls only fail once the last of them has.
+ * <p>
+ * A pre-warm from config.xml doesn't open the gate by itself, since msalInit may yet ask for
+ * something else. Calls made while it runs wait for msalInit, and only fail with the pre-warm's
+ * error if it fails before msalInit has been called.
+ */
+final class InitGate {
+    enum State {
+        NOT_STARTED,
+        INITIALIZING,
+        READY,
+        FAILED
+    }
+
+    private static final String NOT_INITIALIZED = "No configuration has been set yet. Call msalInit() before calling this.";
+
+    private final List<MsalRequest> queuedRequests = new ArrayList<>();
+    private final List<Runnable> queuedActions = new ArrayList<>();
+    private State state = State.NOT_STARTED;
+    private String failure;
+    private int running = 0;
+    private boolean prewarming = false;
+
+    /**
+     * Marks an init as started. Once a client is ready, later inits replace it in the background
+     * and calls keep using the current one in the meantime.
+     */
+    synchronized void begin() {
+        this.running++;
+        if (this.state != State.READY) {
+            this.state = State.INITIALIZING;
+        }
+    }
+
+    synchronized void beginPrewarm() {
+        this.prewarming = true;
+        if (this.state == State.NOT_STARTED) {
+            this.state = State.INITIALIZING;
+        }
+    }
+
+    /**
+     * Marks the pre-warm as done. Queued calls go on waiting for msalInit.
+     */
+    synchronized void prewarmed() {
+        this.prewarming = false;
+    }
+
+    void prewarmFailed(String message) {
+        List<MsalRequest> requests;
+        synchronized (this) {
+            this.prewarming = false;
+            // Anything msalInit has been asked for since is left to msalInit
+            if (this.state != State.INITIALIZING || this.running > 0) {
+                return;
+            }
+            this.state = State.NOT_STARTED;
+            requests = new ArrayList<>(this.queuedRequests);
+            this.queuedRequests.clear();
+            this.queuedActions.clear();
+        }
+        for (MsalRequest request : requests) {
+            request.error(new PluginError(PluginError.PREWARM_FAILED, "Building the client from config.xml preferences failed: " + message + ". Call msalInit() to try again."));
+        }
+    }
+
+    void ready() {
+        List<Runnable> actions;
+        synchronized (this) {
+            this.running = Math.max(0, this.running - 1);
+            this.state = State.READY;
+            this.failure = null;
+            actions = new ArrayList<>(this.queuedActions);
+            this.queuedRequests.clear();
+            this.queuedActions.clear();
+        }
+        for (Runnable action : actions) {
+            action.run();
+        }
+    }
+
+    void fail(String message) {
+        List<MsalRequest> requests;
+        synchronized (this) {
+            this.running = Math.max(0, this.running - 1);
+            if (this.state == State.READY) {
+                return;
+            }
+            this.failure = message;
+            if (this.running > 0) {
+                // Another init may still succeed, so keep the calls waiting on it. A pre-warm can't
+                // stand in for the options msalInit asked for.
+                return;
+            }
+            this.state = State.FAILED;
+            requests = new ArrayList<>(this.queuedRequests);
+            this.queuedRequests.clear();
+            this.queuedActions.clear();
+        }
+        for (MsalRequest request : requests) {
+            request.error(new PluginError(PluginError.INIT_FAILED, "msalInit() failed: " + message));
+        }
+    }
+
+    /**
+     * Runs the action now if a client is ready, queues it while init is running, or fails the
+     * request if there is nothing to wait for.
+     */
+    void whenReady(MsalRequest request, Runnable action) {
+        PluginError error = null;
+        synchronized (this) {
+            switch (this.state) {
+                case INITIALIZING:
+                    this.queuedRequests.add(request);
+                    this.queuedActions.add(action);
+                    return;
+                case FAILED:
+                    error = new PluginError(PluginError.INIT_FAILED, "msalInit() failed: " + this.failure);
+                    break;
+                case NOT_STARTED:
+                    error = new PluginError(PluginError.NOT_INITIALIZED, NOT_INITIALIZED);
+                    break;
+                default:
+            }
+        }
+        if (error != null) {
+            request.error(error);
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.wrobins.cordova.plugin;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.List;
+
+/**
+ * Streaming JSON writer for results sent back to JS. It appends straight into a per-thread
+ * buffer that is reused between calls, so a reply costs one string instead of a tree of
+ * JSONObjects that Cordova then has to serialize again.
+ */
+final class JsonEncoder {
+    private static final int MAX_DEPTH = 64;
+    // Don't hang on to the buffer from one unusually large reply forever
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final char LINE_SEPARATOR = 0x2028;
+    private static final char PARAGRAPH_SEPARATOR = 0x2029;
+
+    private static final ThreadLocal<JsonEncoder> ENCODERS = new ThreadLocal<JsonEncoder>() {
+        @Override
+        protected JsonEncoder initialValue() {
+            return new JsonEncoder();
+        }
+    };
+
+    private StringBuilder out = new StringBuilder(1024);
+    // Whether the object or array at each depth still needs a comma before its next element
+    private final boolean[] needsComma = new boolean[MAX_DEPTH];
+    private int depth = 0;
+    private boolean afterName = false;
+
+    // For documents built while this thread's shared encoder is already in use
+    JsonEncoder() {}
+
+    /**
+     * Returns this thread's encoder, emptied and ready for a new document.
+     */
+    static JsonEncoder obtain() {
+        JsonEncoder encoder = ENCODERS.get();
+        encoder.reset();
+        return encoder;
+    }
+
+    /**
+     * Returns the encoded document and clears the buffer for the next one.
+     */
+    String finish() {
+        String json = this.out.toString();
+        this.reset();
+        return json;
+    }
+
+    JsonEncoder beginObject() {
+        this.beforeValue();
+        this.out.append('{');
+        this.push();
+        return this;
+    }
+
+    JsonEncoder endObject() {
+        this.depth--;
+        this.out.append('}');
+        return this;
+    }
+
+    JsonEncoder beginArray() {
+        this.beforeValue();
+        this.out.append('[');
+        this.push();
+        return this;
+    }
+
+    JsonEncoder endArray() {
+        this.depth--;
+        this.out.append(']');
+        return this;
+    }
+
+    JsonEncoder name(String name) {
+        this.beforeValue();
+        this.string(name);
+        this.out.append(':');
+        this.afterName = true;
+        return this;
+    }
+
+    JsonEncoder value(String value) {
+        this.beforeValue();
+        if (value == null) {
+            this.out.append("null");
+        } else {
+            this.string(value);
+        }
+        return this;
+    }
+
+    JsonEncoder value(long value) {
+        this.beforeValue();
+        this.out.append(value);
+        return this;
+    }
+
+    JsonEncoder value(double value) {
+        this.beforeValue();
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            this.out.append("null");
+        } else if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            this.out.append((long) value);
+        } else {
+            this.out.append(value);
+        }
+        return this;
+    }
+
+    JsonEncoder value(boolean value) {
+        this.beforeValue();
+        this.out.append(value);
+        return this;
+    }
+
+    /**
+     * Writes a claim-style value: lists become arrays, numbers and booleans stay as they are and
+     * anything else is written as its string form.
+     */
+    JsonEncoder value(Object value) {
+        if (value == null) {
+            return this.value((String) null);
+        } else if (value instanceof Boolean) {
+            return this.value(((Boolean) value).booleanValue());
+        } else if (value instanceof Double || value instanceof Float) {
+            return this.value(((Number) value).doubleValue());
+        } else if (value instanceof Number) {
+            return this.value(((Number) value).longValue());
+        } else if (value instanceof List) {
+            this.beginArray();
+            for (Object element : (List<?>) value) {
+                this.value(element);
+            }
+            return this.endArray();
+        }
+        return this.value(value.toString());
+    }
+
+    /**
+     * Writes everything left in the reader as one string value, escaping it as it is read rather
+     * than holding the whole text in memory first.
+     */
+    JsonEncoder value(Reader reader) throws IOException {
+        this.beforeValue();
+        this.out.append('"');
+        char[] buffer = new char[8192];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            this.escape(CharBuffer.wrap(buffer, 0, read));
+        }
+        this.out.append('"');
+        return this;
+    }
+
+    /**
+     * Writes an already encoded JSON value as is.
+     */
+    JsonEncoder raw(String json) {
+        this.beforeValue();
+        this.out.append(json);
+        return this;
+    }
+
+    private void reset() {
+        if (this.out.capacity() > MAX_RETAINED_CAPACITY) {
+            this.out = new StringBuilder(1024);
+        } else {
+            this.out.setLength(0);
+        }
+        this.depth = 0;
+        this.afterName = false;
+    }
+
+    private void push() {
+        if (this.depth == MAX_DEPTH) {
+            throw new IllegalStateException("JSON nested too deeply");
+        }
+        this.needsComma[this.depth++] = false;
+    }
+
+    private void beforeValue() {
+        if (this.afterName) {
+            this.afterName = false;
+            return;
+        }
+        if (this.depth > 0) {
+            if (this.needsComma[this.depth - 1]) {
+                this.out.append(',');
+            }
+            this.needsComma[this.depth - 1] = true;
+        }
+    }
+
+    private void string(String value) {
+        this.out.append('"');
+        this.escape(value);
+        this.out.append('"');
+    }
+
+    private void escape(CharSequence value) {
+        int start = 0;
+        int length = value.length();
+        for (int i = 0; i < length; ++i) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\' && c != LINE_SEPARATOR && c != PARAGRAPH_SEPARATOR) {
+                continue;
+            }
+            this.out.append(value, start, i);
+            switch (c) {
+                case '"':
+                    this.out.append("\\\"");
+                    break;
+                case '\\':
+                    this.out.append("\\\\");
+                    break;
+                case '\n':
+                    this.out.append("\\n");
+                    break;
+                case '\r':
+                    this.out.append("\\r");
+                    break;
+                case '\t':
+                    this.out.append("\\t");
+                    break;
+                default:
+                    // Other control characters, plus the line separators JS string literals can't hold
+                    this.out.append("\\u").append(HEX[c >> 12 & 0xf]).append(HEX[c >> 8 & 0xf]).append(HEX[c >> 4 & 0xf]).append(HEX[c & 0xf]);
+            }
+            start = i + 1;
+        }
+        this.out.append(value, start, length);
+    }
+}
@@ -0,0 +1,86 @@
+package com.wrobins.cordova.plugin;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with log-linear buckets: every power of two of microseconds is
+ * split into four buckets, so recording is a couple of atomic increments and reported
+ * percentiles are within 25% of the real value.
+ */
+final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Enough buckets for a little over two minutes; anything slower lands in the last one
+    private static final int BUCKETS = 26 * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    void recordSince(long startNanos) {
+        this.record(System.nanoTime() - startNanos);
+    }
+
+    void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        this.buckets.incrementAndGet(index(micros));
+        this.totalMicros.addAndGet(micros);
+        long max = this.maxMicros.get();
+        while (micros > max && !this.maxMicros.compareAndSet(max, micros)) {
+            max = this.maxMicros.get();
+        }
+    }
+
+    JSONObject snapshot(boolean reset) throws JSONException {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            counts[i] = reset ? this.buckets.getAndSet(i, 0) : this.buckets.get(i);
+            count += counts[i];
+        }
+        long total = reset ? this.totalMicros.getAndSet(0) : this.totalMicros.get();
+        long max = reset ? this.maxMicros.getAndSet(0) : this.maxMicros.get();
+        JSONObject snapshot = new JSONObject();
+        snapshot.put("count", count);
+        snapshot.put("meanMs", count > 0 ? total / (double) count / 1000 : 0);
+        snapshot.put("p50Ms", percentile(counts, count, max, 0.5) / 1000.0);
+        snapshot.put("p90Ms", percentile(counts, count, max, 0.9) / 1000.0);
+        snapshot.put("p99Ms", percentile(counts, count, max, 0.99) / 1000.0);
+        snapshot.put("maxMs", max / 1000.0);
+        return snapshot;
+    }
+
+    private static long percentile(long[] counts, long count, long max, double percentile) {
+        long rank = (long) Math.ceil(percentile * count);
+        long seen = 0;
+        for (int i = 0; i < counts.length; ++i) {
+            seen += counts[i];
+            if (seen >= rank && seen > 0) {
+                return Math.min(upperBound(i), max);
+            }
+        }
+        return 0;
+    }
+
+    private static int index(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int subBucket = (int) ((micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+        return Math.min(BUCKETS - 1, (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket);
+    }
+
+    private static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int subBucket = index % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
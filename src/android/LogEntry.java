@@ -0,0 +1,78 @@
+package com.wrobins.cordova.plugin;
+
+import com.microsoft.identity.client.Logger;
+
+/**
+ * One MSAL log line split into the fields startLogger reports. MSAL formats lines as
+ * "[timestamp - {metadata}] message", which is parsed with a single pass of index lookups rather
+ * than building a JSONObject out of the metadata.
+ */
+final class LogEntry {
+    private static final String UNSET = "UNSET";
+
+    final String timestamp;
+    final int threadId;
+    final String correlationId;
+    final Logger.LogLevel logLevel;
+    final boolean containsPII;
+    final String message;
+
+    private LogEntry(String timestamp, int threadId, String correlationId, Logger.LogLevel logLevel, boolean containsPII, String message) {
+        this.timestamp = timestamp;
+        this.threadId = threadId;
+        this.correlationId = correlationId;
+        this.logLevel = logLevel;
+        this.containsPII = containsPII;
+        this.message = message;
+    }
+
+    static LogEntry parse(Logger.LogLevel logLevel, String line, boolean containsPII) {
+        int open = line.indexOf('[');
+        int close = open < 0 ? -1 : line.indexOf(']', open);
+        if (close < 0) {
+            // Not in the usual format, so pass the whole line through
+            return new LogEntry("", 0, UNSET, logLevel, containsPII, line);
+        }
+        int dash = line.indexOf(" -", open);
+        String timestamp = dash > open && dash < close ? line.substring(open + 1, dash) : "";
+        int threadId = 0;
+        String thread = metaValue(line, "thread_id", open, close);
+        if (thread != null) {
+            try {
+                threadId = Integer.parseInt(thread);
+            } catch (NumberFormatException ignored) {}
+        }
+        String correlationId = metaValue(line, "correlation_id", open, close);
+        int messageStart = Math.min(close + 2, line.length());
+        return new LogEntry(timestamp, threadId, correlationId != null ? correlationId : UNSET, logLevel, containsPII, line.substring(messageStart));
+    }
+
+    void writeTo(JsonEncoder encoder) {
+        encoder.beginObject();
+        encoder.name("timestamp").value(this.timestamp);
+        encoder.name("threadId").value(this.threadId);
+        encoder.name("correlationId").value(this.correlationId);
+        encoder.name("logLevel").value(this.logLevel.toString());
+        encoder.name("containsPII").value(this.containsPII);
+        encoder.name("message").value(this.message);
+        encoder.endObject();
+    }
+
+    // Reads "key":"value" out of the metadata between from and to
+    private static String metaValue(String line, String key, int from, int to) {
+        int keyAt = line.indexOf("\"" + key + "\"", from);
+        if (keyAt < 0 || keyAt >= to) {
+            return null;
+        }
+        int colon = line.indexOf(':', keyAt + key.length() + 2);
+        if (colon < 0 || colon >= to) {
+            return null;
+        }
+        int start = line.indexOf('"', colon + 1);
+        int end = start < 0 ? -1 : line.indexOf('"', start + 1);
+        if (start < 0 || end < 0 || end > to) {
+            return null;
+        }
+        return line.substring(start + 1, end);
+    }
+}
@@ -0,0 +1,269 @@
+package com.wrobins.cordova.plugin;
+
+import com.microsoft.identity.client.Logger;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes MSAL log lines to size-rotated files in the app's private storage so they survive the
+ * webview being busy or reloading. Lines are handed to a background thread through a bounded
+ * queue and appended through a buffered writer; if the queue fills up they are counted and
+ * dropped rather than blocking MSAL.
+ */
+final class LogFileSink {
+    static final long DEFAULT_MAX_FILE_BYTES = 1024 * 1024;
+    static final int DEFAULT_MAX_FILES = 5;
+    private static final int QUEUE_CAPACITY = 5000;
+    private static final int WRITE_BATCH_SIZE = 500;
+    private static final String LOG_FILE = "msal.log";
+    private static final String ARCHIVE_FILE = "msal-logs.gz";
+
+    private final File directory;
+    private final LinkedBlockingQueue<String> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile Logger.LogLevel logLevel;
+    private volatile boolean showPII;
+    private long maxFileBytes = DEFAULT_MAX_FILE_BYTES;
+    private int maxFiles = DEFAULT_MAX_FILES;
+    // Null after opening the file failed, until the next write tries again
+    private Writer writer;
+    // Lines that were taken off the queue but couldn't be written
+    private long lost;
+    private long fileBytes;
+    private Thread thread;
+
+    LogFileSink(File directory) {
+        this.directory = directory;
+    }
+
+    synchronized void start(Logger.LogLevel logLevel, boolean showPII, long maxFileBytes, int maxFiles) throws IOException {
+        if (!this.directory.isDirectory() && !this.directory.mkdirs()) {
+            throw new IOException("Unable to create " + this.directory.getAbsolutePath());
+        }
+        this.maxFileBytes = Math.max(1024, maxFileBytes);
+        this.maxFiles = Math.max(1, maxFiles);
+        if (this.writer == null) {
+            this.open(true);
+        }
+        this.logLevel = logLevel;
+        this.showPII = showPII;
+        if (this.thread == null) {
+            this.thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    LogFileSink.this.drain();
+                }
+            }, "MsalLogFileSink");
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+    }
+
+    Logger.LogLevel getLogLevel() {
+        return this.logLevel;
+    }
+
+    boolean showsPII() {
+        return this.showPII;
+    }
+
+    boolean accepts(Logger.LogLevel logLevel, boolean containsPII) {
+        Logger.LogLevel level = this.logLevel;
+        return level != null && logLevel.compareTo(level) <= 0 && (this.showPII || !containsPII);
+    }
+
+    void add(String tag, Logger.LogLevel logLevel, String message) {
+        if (!this.queue.offer(logLevel + " " + tag + " " + message)) {
+            this.dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the log files oldest first, after flushing anything still buffered. With compact,
+     * the rotated and current files are first gzipped onto the end of a single archive.
+     */
+    synchronized List<File> files(boolean compact) throws IOException {
+        if (this.writer != null) {
+            this.writer.flush();
+        }
+        List<File> logFiles = new ArrayList<>();
+        for (int i = this.maxFiles - 1; i > 0; --i) {
+            File rotated = this.rotatedFile(i);
+            if (rotated.isFile()) {
+                logFiles.add(rotated);
+            }
+        }
+        File current = new File(this.directory, LOG_FILE);
+        if (current.isFile()) {
+            logFiles.add(current);
+        }
+        File archive = new File(this.directory, ARCHIVE_FILE);
+        if (compact && !logFiles.isEmpty()) {
+            if (archive.length() > this.maxFileBytes * this.maxFiles) {
+                archive.delete();
+            }
+            // Each compaction appends another gzip member, which gunzip reads as one stream
+            OutputStream out = new GZIPOutputStream(new FileOutputStream(archive, true));
+            try {
+                byte[] buffer = new byte[8192];
+                for (File logFile : logFiles) {
+                    InputStream in = new FileInputStream(logFile);
+                    try {
+                        int read;
+                        while ((read = in.read(buffer)) > 0) {
+                            out.write(buffer, 0, read);
+                        }
+                    } finally {
+                        in.close();
+                    }
+                }
+            } finally {
+                out.close();
+            }
+            for (File logFile : logFiles) {
+                if (!logFile.equals(current)) {
+                    logFile.delete();
+                }
+            }
+            logFiles.clear();
+            if (this.writer != null) {
+                this.closeWriter();
+                this.open(false);
+            } else {
+                current.delete();
+            }
+        }
+        if (archive.isFile()) {
+            logFiles.add(0, archive);
+        }
+        if (current.isFile() && !logFiles.contains(current)) {
+            logFiles.add(current);
+        }
+        return logFiles;
+    }
+
+    void shutdown() {
+        Thread writerThread;
+        synchronized (this) {
+            this.logLevel = null;
+            writerThread = this.thread;
+        }
+        if (writerThread != null) {
+            writerThread.interrupt();
+        }
+    }
+
+    private void drain() {
+        List<String> lines = new ArrayList<>(WRITE_BATCH_SIZE);
+        try {
+            while (true) {
+                lines.add(this.queue.take());
+                this.queue.drainTo(lines, WRITE_BATCH_SIZE - 1);
+                synchronized (this) {
+                    long droppedLines = this.dropped.getAndSet(0);
+                    long lostLines = this.lost;
+                    int written = 0;
+                    try {
+                        if (droppedLines > 0) {
+                            this.write("WARNING LogFileSink Dropped " + droppedLines + " log entries because they arrived faster than they could be written");
+                        }
+                        droppedLines = 0;
+                        if (lostLines > 0) {
+                            this.write("WARNING LogFileSink Lost " + lostLines + " log entries because the log file couldn't be written");
+                        }
+                        this.lost = 0;
+                        for (String line : lines) {
+                            this.write(line);
+                            written++;
+                        }
+                        // Only pay for a flush once the backlog is written
+                        if (this.queue.isEmpty()) {
+                            this.writer.flush();
+                        }
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                        // Reported in the file once writing works again, through a fresh writer
+                        // in case this one is broken
+                        this.dropped.addAndGet(droppedLines);
+                        this.lost += lines.size() - written;
+                        this.closeWriter();
+                    }
+                }
+                lines.clear();
+            }
+        } catch (InterruptedException ignored) {
+        } finally {
+            synchronized (this) {
+                this.closeWriter();
+                this.thread = null;
+            }
+        }
+    }
+
+    private void write(String line) throws IOException {
+        // Opening the file again failed last time, so try once more
+        if (this.writer == null) {
+            this.open(true);
+        }
+        if (this.fileBytes >= this.maxFileBytes) {
+            this.rotate();
+        }
+        this.writer.write(line);
+        this.writer.write('\n');
+        // Close enough for rotation; most log output is ASCII
+        this.fileBytes += line.length() + 1;
+    }
+
+    private void rotate() throws IOException {
+        this.closeWriter();
+        this.rotatedFile(this.maxFiles - 1).delete();
+        for (int i = this.maxFiles - 2; i > 0; --i) {
+            File rotated = this.rotatedFile(i);
+            if (rotated.isFile()) {
+                rotated.renameTo(this.rotatedFile(i + 1));
+            }
+        }
+        File current = new File(this.directory, LOG_FILE);
+        if (this.maxFiles > 1) {
+            current.renameTo(this.rotatedFile(1));
+        }
+        this.open(false);
+    }
+
+    // Dropped even if closing fails, so a broken writer is never written to again
+    private void closeWriter() {
+        Writer closing = this.writer;
+        if (closing == null) {
+            return;
+        }
+        this.writer = null;
+        try {
+            closing.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void open(boolean append) throws IOException {
+        File current = new File(this.directory, LOG_FILE);
+        this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(current, append), "UTF-8"), 16 * 1024);
+        this.fileBytes = append ? current.length() : 0;
+    }
+
+    private File rotatedFile(int index) {
+        return new File(this.directory, "msal." + index + ".log");
+    }
+}
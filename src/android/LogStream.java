@@ -0,0 +1,156 @@
+package com.wrobins.cordova.plugin;
+
+import com.microsoft.identity.client.Logger;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Buffers log entries for the startLogger callback and sends them across the bridge in batches,
+ * either once enough have piled up or after a short delay, and never more than one batch per
+ * flush interval. The buffer is a fixed size ring; if entries arrive faster than that, the oldest
+ * are overwritten and counted as dropped instead of letting the webview's message queue grow
+ * without bound.
+ */
+final class LogStream {
+    static final int DEFAULT_CAPACITY = 1000;
+    static final int DEFAULT_BATCH_SIZE = 100;
+    static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 250;
+
+    private final LogEntry[] ring;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final ScheduledThreadPoolExecutor executor;
+    private CallbackContext callbackContext;
+    private volatile Logger.LogLevel logLevel;
+    private volatile boolean showPII;
+    private int head = 0;
+    private int count = 0;
+    private long dropped = 0;
+    private ScheduledFuture<?> pendingFlush;
+    private long lastFlush = 0;
+
+    LogStream() {
+        this(DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE, DEFAULT_FLUSH_INTERVAL_MILLIS);
+    }
+
+    LogStream(int capacity, int batchSize, long flushIntervalMillis) {
+        this.ring = new LogEntry[Math.max(1, capacity)];
+        this.batchSize = Math.max(1, Math.min(batchSize, this.ring.length));
+        this.flushIntervalMillis = Math.max(0, flushIntervalMillis);
+        this.executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "MsalLogStream");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    synchronized void attach(CallbackContext callbackContext, Logger.LogLevel logLevel, boolean showPII) {
+        this.callbackContext = callbackContext;
+        this.logLevel = logLevel;
+        this.showPII = showPII;
+        PluginResult pluginResult = new PluginResult(PluginResult.Status.NO_RESULT);
+        pluginResult.setKeepCallback(true);
+        callbackContext.sendPluginResult(pluginResult);
+    }
+
+    Logger.LogLevel getLogLevel() {
+        return this.logLevel;
+    }
+
+    boolean showsPII() {
+        return this.showPII;
+    }
+
+    boolean accepts(Logger.LogLevel logLevel, boolean containsPII) {
+        Logger.LogLevel level = this.logLevel;
+        return level != null && logLevel.compareTo(level) <= 0 && (this.showPII || !containsPII);
+    }
+
+    synchronized void add(LogEntry entry) {
+        if (this.callbackContext == null || this.executor.isShutdown()) {
+            return;
+        }
+        int tail = (this.head + this.count) % this.ring.length;
+        this.ring[tail] = entry;
+        if (this.count == this.ring.length) {
+            this.head = (this.head + 1) % this.ring.length;
+            this.dropped++;
+        } else {
+            this.count++;
+        }
+        if (this.pendingFlush == null) {
+            this.scheduleFlush(this.count >= this.batchSize ? this.nextAllowedFlush() : this.flushIntervalMillis);
+        } else if (this.count == this.batchSize && this.pendingFlush.getDelay(TimeUnit.MILLISECONDS) > this.nextAllowedFlush()) {
+            // A full batch is waiting, so don't hold it for the rest of the interval
+            if (this.pendingFlush.cancel(false)) {
+                this.scheduleFlush(this.nextAllowedFlush());
+            }
+        }
+    }
+
+    synchronized void shutdown() {
+        this.logLevel = null;
+        this.executor.shutdownNow();
+    }
+
+    private long nextAllowedFlush() {
+        return Math.max(0, this.lastFlush + this.flushIntervalMillis - System.currentTimeMillis());
+    }
+
+    private void scheduleFlush(long delayMillis) {
+        this.pendingFlush = this.executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                LogStream.this.flush();
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void flush() {
+        LogEntry[] batch;
+        long batchDropped;
+        CallbackContext target;
+        synchronized (this) {
+            batch = new LogEntry[Math.min(this.count, this.batchSize)];
+            for (int i = 0; i < batch.length; ++i) {
+                batch[i] = this.ring[this.head];
+                this.ring[this.head] = null;
+                this.head = (this.head + 1) % this.ring.length;
+            }
+            this.count -= batch.length;
+            batchDropped = this.dropped;
+            this.dropped = 0;
+            target = this.callbackContext;
+            this.lastFlush = System.currentTimeMillis();
+            this.pendingFlush = null;
+            // Anything left over goes out in the next batch; the gap between batches is what
+            // keeps a flood of entries from saturating the bridge
+            if (this.count > 0 && !this.executor.isShutdown()) {
+                this.scheduleFlush(this.flushIntervalMillis);
+            }
+        }
+        if (batch.length == 0 && batchDropped == 0) {
+            return;
+        }
+        JsonEncoder encoder = JsonEncoder.obtain();
+        encoder.beginObject();
+        encoder.name("entries").beginArray();
+        for (LogEntry entry : batch) {
+            entry.writeTo(encoder);
+        }
+        encoder.endArray();
+        encoder.name("dropped").value(batchDropped);
+        PluginResult pluginResult = new EncodedResult(PluginResult.Status.OK, encoder.endObject().finish());
+        pluginResult.setKeepCallback(true);
+        target.sendPluginResult(pluginResult);
+    }
+}
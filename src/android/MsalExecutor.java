@@ -0,0 +1,104 @@
+package com.wrobins.cordova.plugin;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The plugin's own bounded thread pool, so blocking MSAL calls don't compete with every other
+ * plugin on Cordova's shared pool. Waiting tasks run in priority order, then in the order they
+ * were submitted. When the queue is full a new task pushes out the newest task of a lower
+ * priority, or is turned away itself if there is none; either way the loser is told through its
+ * rejection callback.
+ */
+final class MsalExecutor {
+    static final int INTERACTIVE = 0;
+    static final int FOREGROUND = 1;
+    static final int BACKGROUND = 2;
+
+    static final int DEFAULT_THREADS = 4;
+    static final int DEFAULT_QUEUE_DEPTH = 64;
+    private static final String REJECTED = "Too many pending requests, try again later";
+
+    private final PriorityBlockingQueue<Runnable> queue = new PriorityBlockingQueue<>();
+    private final ThreadPoolExecutor executor;
+    private final int maxQueued;
+    private final AtomicLong sequence = new AtomicLong();
+
+    MsalExecutor(final String threadName, int threads, int maxQueued) {
+        threads = Math.max(1, threads);
+        this.maxQueued = Math.max(1, maxQueued);
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, this.queue, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, threadName + "-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    void execute(int priority, Runnable task, ErrorCallback onRejected) {
+        Task submitted = new Task(priority, this.sequence.getAndIncrement(), task, onRejected);
+        Task rejected = null;
+        synchronized (this) {
+            if (this.executor.isShutdown()) {
+                rejected = submitted;
+            } else if (this.queue.size() >= this.maxQueued) {
+                Task victim = null;
+                for (Runnable queued : this.queue) {
+                    if (victim == null || ((Task) queued).compareTo(victim) > 0) {
+                        victim = (Task) queued;
+                    }
+                }
+                if (victim != null && victim.priority > submitted.priority && this.queue.remove(victim)) {
+                    rejected = victim;
+                } else {
+                    rejected = submitted;
+                }
+            }
+            if (rejected != submitted) {
+                this.executor.execute(submitted);
+            }
+        }
+        if (rejected != null) {
+            rejected.onRejected.error(new PluginError(PluginError.REJECTED, REJECTED));
+        }
+    }
+
+    synchronized void shutdown() {
+        this.executor.shutdownNow();
+    }
+
+    private static final class Task implements Runnable, Comparable<Task> {
+        final int priority;
+        final long sequence;
+        final Runnable task;
+        final ErrorCallback onRejected;
+
+        Task(int priority, long sequence, Runnable task, ErrorCallback onRejected) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.task = task;
+            this.onRejected = onRejected;
+        }
+
+        @Override
+        public void run() {
+            this.task.run();
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            if (this.priority != other.priority) {
+                return this.priority < other.priority ? -1 : 1;
+            }
+            return this.sequence < other.sequence ? -1 : (this.sequence == other.sequence ? 0 : 1);
+        }
+    }
+}
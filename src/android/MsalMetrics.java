@@ -0,0 +1,59 @@
+package com.wrobins.cordova.plugin;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-action latency histograms and outcome counters, reported by the getMetrics action.
+ */
+final class MsalMetrics {
+    static final class Operation {
+        // From execute() to the reply going back to JS
+        final LatencyHistogram total = new LatencyHistogram();
+        // Time spent waiting for a background thread
+        final LatencyHistogram queueWait = new LatencyHistogram();
+        final LatencyHistogram msal = new LatencyHistogram();
+        final LatencyHistogram serialization = new LatencyHistogram();
+        final AtomicLong successes = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong cacheHits = new AtomicLong();
+
+        JSONObject snapshot(boolean reset) throws JSONException {
+            JSONObject snapshot = new JSONObject();
+            snapshot.put("successes", reset ? this.successes.getAndSet(0) : this.successes.get());
+            snapshot.put("errors", reset ? this.errors.getAndSet(0) : this.errors.get());
+            snapshot.put("cacheHits", reset ? this.cacheHits.getAndSet(0) : this.cacheHits.get());
+            snapshot.put("total", this.total.snapshot(reset));
+            snapshot.put("queueWait", this.queueWait.snapshot(reset));
+            snapshot.put("msal", this.msal.snapshot(reset));
+            snapshot.put("serialization", this.serialization.snapshot(reset));
+            return snapshot;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Operation> operations = new ConcurrentHashMap<>();
+
+    Operation get(String action) {
+        Operation operation = this.operations.get(action);
+        if (operation == null) {
+            Operation created = new Operation();
+            operation = this.operations.putIfAbsent(action, created);
+            if (operation == null) {
+                operation = created;
+            }
+        }
+        return operation;
+    }
+
+    JSONObject snapshot(boolean reset) throws JSONException {
+        JSONObject snapshot = new JSONObject();
+        for (Map.Entry<String, Operation> operation : this.operations.entrySet()) {
+            snapshot.put(operation.getKey(), operation.getValue().snapshot(reset));
+        }
+        return snapshot;
+    }
+}
@@ -4,8 +4,8 @@ import org.apache.cordova.CallbackContext;
 import org.apache.cordova.CordovaInterface;
 import org.apache.cordova.CordovaPlugin;
 import org.apache.cordova.CordovaWebView;
-
 import org.apache.cordova.PluginResult;
+
 import org.json.JSONException;
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -21,12 +21,17 @@ import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 
 import java.net.URLEncoder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
 
 import com.microsoft.identity.client.AcquireTokenParameters;
 import com.microsoft.identity.client.AcquireTokenSilentParameters;
@@ -35,6 +40,7 @@ import com.microsoft.identity.client.IAccount;
 import com.microsoft.identity.client.IAuthenticationResult;
 import com.microsoft.identity.client.ILoggerCallback;
 import com.microsoft.identity.client.IMultipleAccountPublicClientApplication;
+import com.microsoft.identity.client.IPublicClientApplication;
 import com.microsoft.identity.client.ISingleAccountPublicClientApplication;
 import com.microsoft.identity.client.Logger;
 import com.microsoft.identity.client.Prompt;
@@ -47,18 +53,69 @@ import com.microsoft.identity.client.exception.MsalException;
 public class MsalPlugin extends CordovaPlugin {
     private Activity activity;
     private Context context;
-    private CallbackContext callbackContext;
-    private CallbackContext loggerCallbackContext;
-    private PluginResult loggerPluginResult;
-    private ISingleAccountPublicClientApplication appSingleClient;
-    private IMultipleAccountPublicClientApplication appMultipleClient;
-    private boolean isInit = false;
+    private final MsalMetrics metrics = new MsalMetrics();
+    private final RequestDispatcher dispatcher = new RequestDispatcher(this.metrics);
+    private MsalExecutor executor;
+    // authenticatedFetch blocks on the network for as long as the API takes, so it gets threads of
+    // its own instead of holding up sign ins
+    private MsalExecutor fetchExecutor;
+    private final LogStream logStream = new LogStream();
+    private LogFileSink logFileSink;
+    // MSAL's external logger is process-wide and can only be set once, so the one installed
+    // forwards to whichever plugin instance is current
+    private static boolean loggerInstalled = false;
+    private static volatile MsalPlugin logTarget;
+    private volatile ISingleAccountPublicClientApplication appSingleClient;
+    private volatile IMultipleAccountPublicClientApplication appMultipleClient;
+    private final InitGate initGate = new InitGate();
+    private volatile long accountsCheckedAt;
+    private final Object initLock = new Object();
 
     private String clientId;
     private String tenantId;
     private String keyHash;
-    private String accountMode;
-    private String[] scopes;
+    private volatile String accountMode;
+    private volatile String[] scopes;
+    private volatile String defaultAuthority;
+    private volatile String clientConfig;
+    private volatile JSONObject initOptions;
+    private final ClientPool clientPool = new ClientPool();
+    private final ClientPool.Factory pooledClients = new ClientPool.Factory() {
+        @Override
+        public IPublicClientApplication create(String authority) throws InterruptedException, MsalException, IOException, JSONException {
+            File configFile;
+            String accountMode;
+            // Shares buildConfig's fields with msalInit, but only the configuration needs the lock,
+            // not building the client from it
+            synchronized (MsalPlugin.this.initLock) {
+                JSONObject options = MsalPlugin.this.pooledOptions(authority);
+                configFile = MsalPlugin.this.getConfigFile(MsalPlugin.this.buildConfig(options), true);
+                accountMode = options.getString("accountMode");
+            }
+            return MsalPlugin.this.createClient(configFile, accountMode);
+        }
+    };
+    // A token dropped from the cache isn't worth keeping fresh any more
+    private final TokenCache tokenCache = new TokenCache(new TokenCache.EvictionListener() {
+        @Override
+        public void evicted(String key) {
+            MsalPlugin.this.refreshScheduler.cancel(key);
+        }
+    });
+    private final SingleFlight<TokenCallback> silentRequests = new SingleFlight<>();
+    private final TokenRefreshScheduler refreshScheduler = new TokenRefreshScheduler();
+    private final AccountIndex accountIndex = new AccountIndex();
+    private final ResultSerializer resultSerializer = new ResultSerializer();
+    private final SilentPolicy silentPolicy = new SilentPolicy();
+    private final BrowserWarmer browserWarmer = new BrowserWarmer();
+    private final AccountWatcher accountWatcher = new AccountWatcher(this.resultSerializer);
+    private AccountSnapshot accountSnapshot;
+    private final AccountIndex.Loader accountLoader = new AccountIndex.Loader() {
+        @Override
+        public List<IAccount> load() throws InterruptedException, MsalException {
+            return MsalPlugin.this.appMultipleClient.getAccounts();
+        }
+    };
 
     private static final String SIGN_IN_SILENT = "signInSilent";
     private static final String SIGN_IN_INTERACTIVE = "signInInteractive";
@@ -66,58 +123,215 @@ public class MsalPlugin extends CordovaPlugin {
     private static final String MSAL_INIT = "msalInit";
     private static final String GET_ACCOUNTS = "getAccounts";
     private static final String START_LOGGER = "startLogger";
+    private static final String START_FILE_LOGGER = "startFileLogger";
+    private static final String GET_LOG_FILES = "getLogFiles";
+    private static final String GET_METRICS = "getMetrics";
+    private static final String ACQUIRE_TOKENS_BATCH = "acquireTokensBatch";
+    private static final String CANCEL = "cancel";
+    private static final String WATCH_ACCOUNTS = "watchAccounts";
+    private static final String UNWATCH_ACCOUNTS = "unwatchAccounts";
+    private static final String AUTHENTICATED_FETCH = "authenticatedFetch";
+    private static final String PREPARE_INTERACTIVE = "prepareInteractive";
+    private static final String GET_CACHED_ACCOUNTS = "getCachedAccounts";
+
+    // Actions that need a client from msalInit before they can run
+    private static final List<String> CLIENT_ACTIONS = Arrays.asList(
+            GET_ACCOUNTS, SIGN_IN_SILENT, ACQUIRE_TOKENS_BATCH, SIGN_IN_INTERACTIVE, SIGN_OUT, AUTHENTICATED_FETCH, PREPARE_INTERACTIVE);
 
     private static final String SINGLE_ACCOUNT = "SINGLE";
+    // Token cache key for whichever account is signed in while in single account mode
+    private static final String CURRENT_ACCOUNT = "";
     private static final String MULTIPLE_ACCOUNTS = "MULTIPLE";
 
+    // How long a single account mode cache hit goes before the current account is checked again
+    private static final long ACCOUNT_RECHECK_MILLIS = 60 * 1000L;
+    private static final int MAX_PARALLEL_BATCH_ENTRIES = 4;
+    private static final String CONFIG_FILE_PREFIX = "msal_config_";
+    private static final String POOLED_CONFIG_FILE_PREFIX = CONFIG_FILE_PREFIX + "pooled_";
+
     @Override
     public void initialize(CordovaInterface cordova, CordovaWebView webView) {
         super.initialize(cordova, webView);
         activity = cordova.getActivity();
         context = webView.getContext();
         keyHash = this.preferences.getString("keyHash","");
+        executor = new MsalExecutor("MsalWorker",
+                this.preferences.getInteger("msalThreads", MsalExecutor.DEFAULT_THREADS),
+                this.preferences.getInteger("msalQueueDepth", MsalExecutor.DEFAULT_QUEUE_DEPTH));
+        fetchExecutor = new MsalExecutor("MsalFetch",
+                this.preferences.getInteger("msalFetchThreads", MsalExecutor.DEFAULT_THREADS),
+                this.preferences.getInteger("msalQueueDepth", MsalExecutor.DEFAULT_QUEUE_DEPTH));
+        logFileSink = new LogFileSink(new File(context.getFilesDir(), "msal_logs"));
+        // Kept out of backups, since it names the signed in users
+        accountSnapshot = new AccountSnapshot(new File(context.getNoBackupFilesDir(), "msal_account_snapshot.json"));
+        this.runInBackground(GET_CACHED_ACCOUNTS, MsalExecutor.BACKGROUND, new ErrorCallback() {
+            @Override
+            public void error(PluginError error) {}
+        }, new Runnable() {
+            @Override
+            public void run() {
+                MsalPlugin.this.accountSnapshot.preload();
+            }
+        });
+        try {
+            JSONObject options = this.preferredInitOptions();
+            if (options != null) {
+                this.prewarm(options);
+            }
+        } catch (JSONException e) {
+            e.printStackTrace();
+        }
     }
 
     @Override
-    public boolean execute(String action, JSONArray args, CallbackContext callbackContext) throws JSONException {
-        // We need a special callback context for the logger to keep continuous updates
-        // without interfering with other plugin operations.
-        if (!START_LOGGER.equals(action)) {
-            this.callbackContext = callbackContext;
+    public void onReset() {
+        // The webview navigated or reloaded, so nobody is left to hear account events
+        this.accountWatcher.clear();
+        super.onReset();
+    }
+
+    @Override
+    public void onResume(boolean multitasking) {
+        super.onResume(multitasking);
+        // Accounts are most likely to have changed elsewhere while the app was in the background
+        this.checkAccounts();
+    }
+
+    @Override
+    public void onDestroy() {
+        this.refreshScheduler.shutdown();
+        this.browserWarmer.shutdown();
+        this.dispatcher.shutdown();
+        this.executor.shutdown();
+        this.fetchExecutor.shutdown();
+        if (logTarget == this) {
+            logTarget = null;
         }
+        this.logStream.shutdown();
+        this.logFileSink.shutdown();
+        super.onDestroy();
+    }
 
-        try {
-            if (MSAL_INIT.equals(action)) {
-                this.msalInit(new JSONObject(args.getString(0)));
-            }
-            if (START_LOGGER.equals(action)) {
-                this.loggerCallbackContext = callbackContext;
-                Logger.LogLevel logLevel;
-                switch (args.getString(1)) {
-                    case "ERROR":
-                        logLevel = Logger.LogLevel.ERROR;
-                        break;
-                    case "WARNING":
-                        logLevel = Logger.LogLevel.WARNING;
-                        break;
-                    case "INFO":
-                        logLevel = Logger.LogLevel.INFO;
-                        break;
-                    default:
-                        logLevel = Logger.LogLevel.VERBOSE;
-                }
-                this.startLogger(args.getBoolean(0), logLevel);
+    @Override
+    public boolean execute(final String action, final JSONArray args, CallbackContext callbackContext) throws JSONException {
+        // We need a special callback context for the logger to keep continuous updates
+        // without interfering with other plugin operations. Everything else gets its own
+        // request so concurrent calls can't reply on each other's callback context.
+        if (START_LOGGER.equals(action)) {
+            try {
+                this.startLogger(callbackContext, args.getBoolean(0), getLogLevel(args.getString(1)));
+            } catch (Exception e) {
+                e.printStackTrace();
+                callbackContext.error(e.getMessage());
+                return false;
             }
-            if (GET_ACCOUNTS.equals(action)) {
-                this.getAccounts();
+            return true;
+        }
+        if (WATCH_ACCOUNTS.equals(action)) {
+            this.accountWatcher.subscribe(callbackContext);
+            this.checkAccounts();
+            return true;
+        }
+        if (UNWATCH_ACCOUNTS.equals(action)) {
+            this.accountWatcher.unsubscribeAll();
+            callbackContext.success();
+            return true;
+        }
+        // Answers straight away from storage, without waiting for msalInit
+        if (GET_CACHED_ACCOUNTS.equals(action)) {
+            this.accountSnapshot.get(callbackContext);
+            this.checkAccounts();
+            return true;
+        }
+
+        // Client calls can end with an options object giving them an id to cancel them by and a
+        // timeout in milliseconds
+        JSONObject callOptions = args.optJSONObject(callOptionsIndex(action));
+        final MsalRequest request = this.dispatcher.register(action, callOptions != null ? callOptions.optString("id", null) : null, callbackContext);
+        if (callOptions != null) {
+            this.dispatcher.setDeadline(request, callOptions.optLong("timeout", 0));
+        }
+        if (MSAL_INIT.equals(action)) {
+            try {
+                this.msalInit(request, new JSONObject(args.getString(0)));
+            } catch (Exception e) {
+                e.printStackTrace();
+                request.error(PluginError.from(e));
+                return false;
             }
-            if (SIGN_IN_SILENT.equals(action)) {
-                this.signinUserSilent(args.length() > 0 ? args.getString(0) : "");
+            return true;
+        }
+        // The file logger doesn't depend on a client, so it can capture msalInit itself
+        if (START_FILE_LOGGER.equals(action)) {
+            JSONObject options = args.optJSONObject(0);
+            this.startFileLogger(request, options != null ? options : new JSONObject());
+            return true;
+        }
+        if (GET_LOG_FILES.equals(action)) {
+            this.getLogFiles(request, args.optBoolean(0, false));
+            return true;
+        }
+        if (GET_METRICS.equals(action)) {
+            try {
+                request.success(this.metrics.snapshot(args.optBoolean(0, false)));
+            } catch (JSONException e) {
+                request.error(PluginError.from(e));
             }
-            if (SIGN_OUT.equals(action)) {
-                this.signOut(args.length() > 0 ? args.getString(0) : "");
+            return true;
+        }
+        if (CANCEL.equals(action)) {
+            request.sendPluginResult(new PluginResult(PluginResult.Status.OK, this.dispatcher.cancel(args.getString(0))));
+            return true;
+        }
+        if (!CLIENT_ACTIONS.contains(action)) {
+            this.dispatcher.remove(request);
+            return false;
+        }
+        // Calls made while msalInit is still running wait for it instead of failing
+        this.initGate.whenReady(request, new Runnable() {
+            @Override
+            public void run() {
+                MsalPlugin.this.dispatch(request, action, args);
             }
-            if (SIGN_IN_INTERACTIVE.equals(action)) {
+        });
+        return true;
+    }
+
+    private static int callOptionsIndex(String action) {
+        switch (action) {
+            case GET_ACCOUNTS:
+            case ACQUIRE_TOKENS_BATCH:
+            case SIGN_OUT:
+                return 1;
+            case SIGN_IN_SILENT:
+            case AUTHENTICATED_FETCH:
+                return 2;
+            case SIGN_IN_INTERACTIVE:
+                return 5;
+            default:
+                return -1;
+        }
+    }
+
+    private void dispatch(MsalRequest request, String action, JSONArray args) {
+        // Timed out or cancelled while waiting for msalInit
+        if (request.isSettled()) {
+            return;
+        }
+        try {
+            if (GET_ACCOUNTS.equals(action)) {
+                this.getAccounts(request, ResultProjection.from(args.optJSONObject(0)));
+            } else if (SIGN_IN_SILENT.equals(action)) {
+                this.signinUserSilent(request, args.length() > 0 ? args.getString(0) : "", ResultProjection.from(args.optJSONObject(1)), args.optString(3, ""));
+            } else if (PREPARE_INTERACTIVE.equals(action)) {
+                request.sendPluginResult(new PluginResult(PluginResult.Status.OK, this.prepareInteractive(args.optString(0, ""))));
+            } else if (AUTHENTICATED_FETCH.equals(action)) {
+                this.authenticatedFetch(request, args.getJSONObject(0), args.optString(1, ""));
+            } else if (ACQUIRE_TOKENS_BATCH.equals(action)) {
+                this.acquireTokensBatch(request, args.length() > 0 ? args.getJSONArray(0) : new JSONArray());
+            } else if (SIGN_OUT.equals(action)) {
+                this.signOut(request, args.length() > 0 ? args.getString(0) : "");
+            } else if (SIGN_IN_INTERACTIVE.equals(action)) {
                 String loginHint = args.length() > 0 ? args.getString(0) : "";
                 if (loginHint.equals("null")) {
                     loginHint = "";
@@ -155,383 +369,921 @@ public class MsalPlugin extends CordovaPlugin {
                     }
                     otherScopesToAuthorize = scopes.toArray(new String[0]);
                 }
-                this.signinUserInteractive(loginHint, authorizationQueryStringParameters, prompt, otherScopesToAuthorize);
+                this.signinUserInteractive(request, loginHint, authorizationQueryStringParameters, prompt, otherScopesToAuthorize, args.optString(6, ""));
             }
         } catch (Exception e) {
             e.printStackTrace();
-            callbackContext.error(e.getMessage());
+            request.error(PluginError.from(e));
+        }
+    }
+
+    private void msalInit(final MsalRequest request, final JSONObject options) {
+        this.initGate.begin();
+        this.runInBackground(MSAL_INIT, MsalExecutor.INTERACTIVE, new ErrorCallback() {
+            @Override
+            public void error(PluginError error) {
+                request.error(error);
+                MsalPlugin.this.initGate.fail(error.message);
+            }
+        }, new Runnable() {
+            @Override
+            public void run() {
+                MsalPlugin.this.initClient(request, options);
+            }
+        });
+    }
+
+    // Starts building the client configured in config.xml while the webview is still loading. A
+    // later msalInit() with the same options waits for it and then finds nothing left to build.
+    private void prewarm(final JSONObject options) {
+        this.initGate.beginPrewarm();
+        this.runInBackground(MSAL_INIT, MsalExecutor.INTERACTIVE, new ErrorCallback() {
+            @Override
+            public void error(PluginError error) {
+                MsalPlugin.this.initGate.prewarmFailed(error.message);
+            }
+        }, new Runnable() {
+            @Override
+            public void run() {
+                MsalPlugin.this.initClient(null, options);
+            }
+        });
+    }
+
+    // The options msalInit() would get from JS, filled from config.xml preferences with the same
+    // defaults msalplugin.js uses so the configurations match. Null when no client id is set.
+    private JSONObject preferredInitOptions() throws JSONException {
+        String clientId = this.preferences.getString("msalClientId", "");
+        if ("".equals(clientId)) {
+            return null;
+        }
+        JSONObject authority = new JSONObject();
+        authority.put("type", this.preferences.getString("msalAuthorityType", "AAD"));
+        authority.put("audience", this.preferences.getString("msalAuthorityAudience", "AzureADandPersonalMicrosoftAccount"));
+        authority.put("authorityUrl", this.preferences.getString("msalAuthorityUrl", ""));
+        authority.put("default", true);
+        JSONArray scopes = new JSONArray();
+        for (String scope : this.preferences.getString("msalScopes", "User.Read").split("[,\\s]+")) {
+            if (!"".equals(scope)) {
+                scopes.put(scope);
+            }
+        }
+        JSONObject options = new JSONObject();
+        options.put("clientId", clientId);
+        options.put("tenantId", this.preferences.getString("msalTenantId", "common"));
+        options.put("accountMode", this.preferences.getString("msalAccountMode", SINGLE_ACCOUNT));
+        options.put("authorizationUserAgent", this.preferences.getString("msalAuthorizationUserAgent", "DEFAULT"));
+        options.put("multipleCloudsSupported", this.preferences.getBoolean("msalMultipleCloudsSupported", false));
+        options.put("brokerRedirectUri", this.preferences.getBoolean("msalBrokerRedirectUri", false));
+        options.put("prepareInteractive", this.preferences.getBoolean("msalPrepareInteractive", false));
+        options.put("accountSnapshot", this.preferences.getBoolean("msalAccountSnapshot", false));
+        // Same defaults as buildConfig, which is what an msalInit() that leaves these out gets
+        options.put("webViewZoomControlsEnabled", this.preferences.getBoolean("msalWebViewZoomControlsEnabled", true));
+        options.put("webViewZoomEnabled", this.preferences.getBoolean("msalWebViewZoomEnabled", true));
+        options.put("powerOptCheckForNetworkReqEnabled", this.preferences.getBoolean("msalPowerOptCheckForNetworkReqEnabled", true));
+        options.put("authorities", new JSONArray().put(authority));
+        options.put("scopes", scopes);
+        return options;
+    }
+
+    // Builds the client for these options unless it's the one we already have. The request is null
+    // when pre-warming, in which case only calls queued before msalInit hear about a failure.
+    private void initClient(MsalRequest request, JSONObject options) {
+        // Inits run one at a time so a client can't be replaced halfway through building one
+        synchronized (this.initLock) {
+            // An msalInit that got here first has the final say on the options
+            if (request == null && this.initOptions != null) {
+                this.initGate.prewarmed();
+                return;
+            }
+            try {
+                String config = this.buildConfig(options);
+                // Creating a client is expensive, so keep the one we have when msalInit is
+                // called again (app resume, webview reload) with the same configuration
+                if (!config.equals(this.clientConfig)) {
+                    long msalStartedAt = System.nanoTime();
+                    IPublicClientApplication client = this.createClient(this.getConfigFile(config, false), options.getString("accountMode"));
+                    if (client instanceof ISingleAccountPublicClientApplication) {
+                        this.appSingleClient = (ISingleAccountPublicClientApplication) client;
+                        this.accountMode = SINGLE_ACCOUNT;
+                    } else {
+                        this.appMultipleClient = (IMultipleAccountPublicClientApplication) client;
+                        this.accountMode = MULTIPLE_ACCOUNTS;
+                    }
+                    this.defaultAuthority = client.getConfiguration().getDefaultAuthority().getAuthorityURL().toString();
+                    this.metrics.get(MSAL_INIT).msal.recordSince(msalStartedAt);
+                    this.clientPool.clear();
+                    this.clientConfig = config;
+                    this.accountIndex.invalidate();
+                    this.invalidateTokens();
+                }
+                this.tokenCache.configure(
+                        options.optInt("tokenCacheSize", TokenCache.DEFAULT_MAX_ENTRIES),
+                        options.optLong("tokenExpirySkewSeconds", TokenCache.DEFAULT_EXPIRY_SKEW_MILLIS / 1000) * 1000);
+                this.refreshScheduler.configure(
+                        options.optLong("backgroundRefreshSeconds", 0) * 1000,
+                        options.optLong("backgroundRefreshJitterSeconds", TokenRefreshScheduler.DEFAULT_JITTER_MILLIS / 1000) * 1000);
+                ArrayList<String> scopes = new ArrayList<String>();
+                for (int i = 0; i < options.getJSONArray("scopes").length(); ++i) {
+                    scopes.add(options.getJSONArray("scopes").getString(i));
+                }
+                this.scopes = scopes.toArray(new String[0]);
+                this.initOptions = options;
+                this.dispatcher.setStructuredErrors(options.optBoolean("structuredErrors", false));
+                this.clientPool.configure(options.optInt("clientPoolSize", ClientPool.DEFAULT_MAX_CLIENTS));
+                String[] snapshotClaims = null;
+                JSONArray snapshotClaimsList = options.optJSONArray("accountSnapshotClaims");
+                if (snapshotClaimsList != null) {
+                    snapshotClaims = new String[snapshotClaimsList.length()];
+                    for (int i = 0; i < snapshotClaimsList.length(); ++i) {
+                        snapshotClaims[i] = snapshotClaimsList.getString(i);
+                    }
+                }
+                this.accountSnapshot.configure(options.optBoolean("accountSnapshot", false), snapshotClaims);
+                if (request != null) {
+                    request.success();
+                    this.initGate.ready();
+                } else {
+                    this.initGate.prewarmed();
+                }
+                this.checkAccounts();
+                if (options.optBoolean("prepareInteractive", false)) {
+                    this.prepareInteractive("");
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+                if (request != null) {
+                    request.error(PluginError.from(e));
+                    this.initGate.fail(e.getMessage());
+                } else {
+                    this.initGate.prewarmFailed(e.getMessage());
+                }
+            }
+        }
+    }
+
+    // Only the browser user agents go through Custom Tabs; MSAL's own webview has nothing to warm
+    private boolean prepareInteractive(String authority) {
+        if ("WEBVIEW".equals(this.initOptions.optString("authorizationUserAgent"))) {
             return false;
         }
+        return this.browserWarmer.prepare(this.context, "".equals(authority) ? this.defaultAuthority : authority);
+    }
 
-        return true;
+    private IPublicClientApplication createClient(File configFile, String accountMode) throws InterruptedException, MsalException {
+        if (accountMode.equals(SINGLE_ACCOUNT)) {
+            return PublicClientApplication.createSingleAccountPublicClientApplication(context, configFile);
+        }
+        return MultipleAccountPublicClientApplication.createMultipleAccountPublicClientApplication(context, configFile);
+    }
+
+    // The msalInit options with the given authority as the only, default one, keeping the type
+    // and audience of the default authority they had
+    private JSONObject pooledOptions(String authorityUrl) throws JSONException {
+        JSONObject options = new JSONObject(this.initOptions.toString());
+        JSONArray authorities = options.getJSONArray("authorities");
+        JSONObject authority = authorities.getJSONObject(0);
+        for (int i = 0; i < authorities.length(); ++i) {
+            if (authorities.getJSONObject(i).optBoolean("default", false)) {
+                authority = authorities.getJSONObject(i);
+                break;
+            }
+        }
+        authority.put("authorityUrl", authorityUrl);
+        authority.put("default", true);
+        options.put("authorities", new JSONArray().put(authority));
+        return options;
+    }
+
+    // The main client serves its default authority; any other authority gets a client of its own
+    // from the pool. With the pool turned off, the main client is asked for the other authority
+    // as well.
+    private IPublicClientApplication clientFor(String authority) throws InterruptedException, MsalException, IOException, JSONException {
+        if ("".equals(authority) || authority.equals(this.defaultAuthority) || !this.clientPool.isEnabled()) {
+            return SINGLE_ACCOUNT.equals(this.accountMode) ? this.appSingleClient : this.appMultipleClient;
+        }
+        return this.clientPool.get(authority, this.pooledClients);
+    }
+
+    // Every background task for an action goes through here so its queue wait is recorded.
+    // Silent acquisitions from batches and background refreshes count towards signInSilent.
+    private void runInBackground(String action, int priority, ErrorCallback onRejected, Runnable task) {
+        this.runOn(this.executor, action, priority, onRejected, task);
+    }
+
+    private void runOn(MsalExecutor executor, final String action, int priority, ErrorCallback onRejected, final Runnable task) {
+        final long queuedAt = System.nanoTime();
+        executor.execute(priority, new Runnable() {
+            @Override
+            public void run() {
+                MsalPlugin.this.metrics.get(action).queueWait.recordSince(queuedAt);
+                task.run();
+            }
+        }, onRejected);
+    }
+
+    private String buildConfig(JSONObject options) throws JSONException {
+        String keyHashUrlFriendly;
+        try {
+            keyHashUrlFriendly = URLEncoder.encode(this.keyHash, "UTF-8");
+        } catch(UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        if (!"".equals(options.optString("tenantId"))) {
+            this.tenantId = options.getString("tenantId");
+        }
+        if (!"".equals(options.optString("clientId"))) {
+            this.clientId = options.getString("clientId");
+        }
+        JSONArray authorities = new JSONArray();
+        JSONArray authoritiesList = options.getJSONArray("authorities");
+        for (int i = 0; i < authoritiesList.length(); ++i) {
+            JSONObject authority = authoritiesList.getJSONObject(i);
+            JSONObject authorityConfig = new JSONObject();
+            authorityConfig.put("type", authority.getString("type"));
+            JSONObject audience = new JSONObject();
+            audience.put("type", authority.getString("audience"));
+            audience.put("tenant_id", this.tenantId);
+            authorityConfig.put("audience", audience);
+            if (authority.has("authorityUrl") && !authority.getString("authorityUrl").equals("")) {
+                authorityConfig.put("authority_url", authority.getString("authorityUrl"));
+            }
+            if (authority.has("default")) {
+                authorityConfig.put("default", authority.getBoolean("default"));
+            }
+            authorities.put(authorityConfig);
+        }
+        JSONObject config = new JSONObject();
+        config.put("power_opt_check_for_network_req_enabled", options.optBoolean("powerOptCheckForNetworkReqEnabled", true));
+        config.put("web_view_zoom_controls_enabled", options.optBoolean("webViewZoomControlsEnabled", true));
+        config.put("web_view_zoom_enabled", options.optBoolean("webViewZoomEnabled", true));
+        config.put("client_id", this.clientId);
+        config.put("account_mode", options.getString("accountMode"));
+        config.put("authorization_user_agent", options.getString("authorizationUserAgent"));
+        config.put("redirect_uri", "msauth://" + this.activity.getApplicationContext().getPackageName() + "/" + keyHashUrlFriendly);
+        config.put("multiple_clouds_supported", options.getBoolean("multipleCloudsSupported"));
+        config.put("broker_redirect_uri_registered", options.getBoolean("brokerRedirectUri"));
+        config.put("authorities", authorities);
+        return config.toString();
+    }
+
+    private void startLogger(CallbackContext callbackContext, boolean showPII, Logger.LogLevel logLevel) {
+        // Set up a dedicated callback context to handle multiple log entries until we want to stop
+        try {
+            this.logStream.attach(callbackContext, logLevel, showPII);
+            this.updateLogger();
+        } catch (IllegalStateException e) {
+            callbackContext.error(e.getMessage());
+        }
     }
 
-    private void msalInit(final JSONObject options) {
-        cordova.getThreadPool().execute(new Runnable() {
+    private void startFileLogger(final MsalRequest request, final JSONObject options) {
+        this.runInBackground(START_FILE_LOGGER, MsalExecutor.BACKGROUND, request, new Runnable() {
             @Override
             public void run() {
                 try {
-                    String keyHashUrlFriendly = "";
-                    try {
-                        keyHashUrlFriendly = URLEncoder.encode(MsalPlugin.this.keyHash, "UTF-8");
-                    } catch(UnsupportedEncodingException e) {
-                        MsalPlugin.this.callbackContext.error(e.getMessage());
-                    }
-                    StringBuilder authorities = new StringBuilder("    \"authorities\": [\n");
-                    String data;
-                    try {
-                        if (!"".equals(options.optString("tenantId"))) {
-                            MsalPlugin.this.tenantId = options.getString("tenantId");
-                        }
-                        if (!"".equals(options.optString("clientId"))) {
-                            MsalPlugin.this.clientId = options.getString("clientId");
-                        }
-                        JSONArray authoritiesList = options.getJSONArray("authorities");
-                        for (int i = 0; i < authoritiesList.length(); ++i) {
-                            JSONObject authority = authoritiesList.getJSONObject(i);
-                            authorities.append("      {\n");
-                            authorities.append("        \"type\": \"").append(authority.getString("type")).append("\",\n");
-                            authorities.append("        \"audience\": {\n");
-                            StringBuilder audience = authorities.append("          \"type\": \"").append(authority.getString("audience")).append("\",\n");
-                            authorities.append("          \"tenant_id\": \"").append(MsalPlugin.this.tenantId).append("\"\n");
-                            authorities.append("        },\n");
-                            if (authority.has("authorityUrl") && !authority.getString("authorityUrl").equals("")) {
-                                authorities.append("        \"authority_url\": \"").append(authority.getString("authorityUrl")).append("\",\n");
-                            }
-                            if (authority.has("default")) {
-                                authorities.append("        \"default\": ").append(authority.getBoolean("default")).append("\n");
-                            }
-                            if (i < authoritiesList.length() - 1) {
-                                authorities.append("      },\n");
-                            } else {
-                                authorities.append("      }\n");
-                            }
-                        }
-                        authorities.append("    ]\n");
-                        data = "{\n" +
-                                "    \"power_opt_check_for_network_req_enabled\": " + options.optBoolean("powerOptCheckForNetworkReqEnabled", true) + ",\n" +
-                                "    \"web_view_zoom_controls_enabled\": " + options.optBoolean("webViewZoomControlsEnabled", true) + ",\n" +
-                                "    \"web_view_zoom_enabled\" : " + options.optBoolean("webViewZoomEnabled", true) + ",\n" +
-                                "    \"client_id\" : \"" + MsalPlugin.this.clientId + "\",\n" +
-                                "    \"account_mode\": \"" + options.getString("accountMode") + "\",\n" +
-                                "    \"authorization_user_agent\" : \"" + options.getString("authorizationUserAgent") + "\",\n" +
-                                "    \"redirect_uri\" : \"msauth://" + MsalPlugin.this.activity.getApplicationContext().getPackageName() + "/" + keyHashUrlFriendly + "\",\n" +
-                                "    \"multiple_clouds_supported\": " + options.getBoolean("multipleCloudsSupported") + ",\n" +
-                                "    \"broker_redirect_uri_registered\": " + options.getBoolean("brokerRedirectUri") + ",\n" +
-                                authorities.toString() +
-                                "  }";
-                        File config = createConfigFile(data);
-                        if (options.getString("accountMode").equals(SINGLE_ACCOUNT)) {
-                            MsalPlugin.this.appSingleClient = PublicClientApplication.createSingleAccountPublicClientApplication(context, config);
-                            MsalPlugin.this.accountMode = SINGLE_ACCOUNT;
-                        } else {
-                            MsalPlugin.this.appMultipleClient = MultipleAccountPublicClientApplication.createMultipleAccountPublicClientApplication(context, config);
-                            MsalPlugin.this.accountMode = MULTIPLE_ACCOUNTS;
-                        }
-                        config.delete();
-                        ArrayList<String> scopes = new ArrayList<String>();
-                        for (int i = 0; i < options.getJSONArray("scopes").length(); ++i) {
-                            scopes.add(options.getJSONArray("scopes").getString(i));
-                        }
-                        MsalPlugin.this.scopes = scopes.toArray(new String[0]);
-                        MsalPlugin.this.isInit = true;
-                        MsalPlugin.this.callbackContext.success();
-                    } catch (JSONException ignored) {}
-                } catch (InterruptedException | MsalException e) {
-                    e.printStackTrace();
+                    MsalPlugin.this.logFileSink.start(
+                            getLogLevel(options.optString("logLevel", "VERBOSE")),
+                            options.optBoolean("containsPII", false),
+                            options.optLong("maxFileSizeKb", LogFileSink.DEFAULT_MAX_FILE_BYTES / 1024) * 1024,
+                            options.optInt("maxFiles", LogFileSink.DEFAULT_MAX_FILES));
+                    MsalPlugin.this.updateLogger();
+                    request.success();
+                } catch (IOException | IllegalStateException e) {
+                    request.error(PluginError.from(e));
                 }
             }
         });
     }
 
-    private void startLogger(boolean showPII, Logger.LogLevel logLevel) {
-        // Set up a dedicated callback context to handler multiple log entries until we way to stop
-        this.loggerPluginResult = new PluginResult(PluginResult.Status.NO_RESULT);
-        this.loggerPluginResult.setKeepCallback(true);
-        this.loggerCallbackContext.sendPluginResult(this.loggerPluginResult);
-        try {
-            // Set up the logger with the options we want
-            Logger.getInstance().setEnablePII(showPII);
-            Logger.getInstance().setLogLevel(logLevel);
-            Logger.getInstance().setExternalLogger(new ILoggerCallback() {
-                @Override
-                public void log(String tag, Logger.LogLevel logLevel, String message, boolean containsPII) {
-                    try {
-                        JSONObject logEntry = new JSONObject();
+    private void getLogFiles(final MsalRequest request, final boolean compact) {
+        this.runInBackground(GET_LOG_FILES, MsalExecutor.BACKGROUND, request, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    JSONArray files = new JSONArray();
+                    for (File logFile : MsalPlugin.this.logFileSink.files(compact)) {
+                        JSONObject file = new JSONObject();
+                        file.put("path", logFile.getAbsolutePath());
+                        file.put("size", logFile.length());
+                        files.put(file);
+                    }
+                    request.success(files);
+                } catch (IOException | JSONException e) {
+                    request.error(PluginError.from(e));
+                }
+            }
+        });
+    }
 
-                        // Parse out the message object to make it cleaner.
-                        String meta = message.substring(message.indexOf("["), message.indexOf("]"));
-                        logEntry.put("timestamp", meta.substring(1, meta.indexOf(" -")));
-                        JSONObject data = new JSONObject(meta.substring(meta.indexOf("{"), meta.indexOf("}") + 1));
-                        logEntry.put("threadId", Integer.parseInt(data.getString("thread_id")));
-                        logEntry.put("correlationId", data.getString("correlation_id"));
+    // MSAL only takes one external logger and one level, so a single callback feeds both the JS
+    // stream and the file sink at whichever of their levels is more verbose
+    private synchronized void updateLogger() {
+        Logger.LogLevel streamLevel = this.logStream.getLogLevel();
+        Logger.LogLevel fileLevel = this.logFileSink.getLogLevel();
+        Logger.LogLevel logLevel = streamLevel;
+        if (logLevel == null || (fileLevel != null && fileLevel.compareTo(logLevel) > 0)) {
+            logLevel = fileLevel;
+        }
+        if (logLevel == null) {
+            return;
+        }
+        Logger.getInstance().setEnablePII((streamLevel != null && this.logStream.showsPII()) || (fileLevel != null && this.logFileSink.showsPII()));
+        Logger.getInstance().setLogLevel(logLevel);
+        logTarget = this;
+        installLogger();
+    }
 
-                        logEntry.put("logLevel", logLevel.toString());
-                        logEntry.put("containsPII", containsPII);
-                        logEntry.put("message", message.substring(message.indexOf("]") + 2));
+    private static synchronized void installLogger() {
+        if (loggerInstalled) {
+            return;
+        }
+        Logger.getInstance().setExternalLogger(new ILoggerCallback() {
+            @Override
+            public void log(String tag, Logger.LogLevel logLevel, String message, boolean containsPII) {
+                MsalPlugin target = logTarget;
+                if (target == null) {
+                    return;
+                }
+                // Entries go out to JS in batches rather than one bridge message per line
+                if (target.logStream.accepts(logLevel, containsPII)) {
+                    target.logStream.add(LogEntry.parse(logLevel, message, containsPII));
+                }
+                if (target.logFileSink.accepts(logLevel, containsPII)) {
+                    target.logFileSink.add(tag, logLevel, message);
+                }
+            }
+        });
+        loggerInstalled = true;
+    }
 
+    private static Logger.LogLevel getLogLevel(String logLevel) {
+        switch (logLevel) {
+            case "ERROR":
+                return Logger.LogLevel.ERROR;
+            case "WARNING":
+                return Logger.LogLevel.WARNING;
+            case "INFO":
+                return Logger.LogLevel.INFO;
+            default:
+                return Logger.LogLevel.VERBOSE;
+        }
+    }
 
-                        MsalPlugin.this.loggerPluginResult = new PluginResult(PluginResult.Status.OK, logEntry);
-                        MsalPlugin.this.loggerPluginResult.setKeepCallback(true);
-                        MsalPlugin.this.loggerCallbackContext.sendPluginResult(MsalPlugin.this.loggerPluginResult);
-                    } catch (JSONException e) {
-                        MsalPlugin.this.loggerCallbackContext.error(e.getMessage());
+    private void getAccounts(final MsalRequest request, final ResultProjection projection) {
+        this.runInBackground(GET_ACCOUNTS, MsalExecutor.BACKGROUND, request, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    MsalMetrics.Operation metrics = MsalPlugin.this.metrics.get(GET_ACCOUNTS);
+                    long msalStartedAt = System.nanoTime();
+                    List<IAccount> msalAccounts = new ArrayList<>();
+                    if (SINGLE_ACCOUNT.equals(accountMode)) {
+                        IAccount currentAccount = MsalPlugin.this.appSingleClient.getCurrentAccount().getCurrentAccount();
+                        if (currentAccount != null) {
+                            msalAccounts.add(currentAccount);
+                        }
+                    } else {
+                        // Listing accounts reads the store anyway, so refresh the index while we're at it
+                        msalAccounts = MsalPlugin.this.accountIndex.reload(MsalPlugin.this.accountLoader);
                     }
+                    metrics.msal.recordSince(msalStartedAt);
+                    MsalPlugin.this.accountsLoaded(msalAccounts, SINGLE_ACCOUNT.equals(accountMode));
+                    long serializationStartedAt = System.nanoTime();
+                    String accounts = MsalPlugin.this.resultSerializer.accounts(msalAccounts, projection);
+                    metrics.serialization.recordSince(serializationStartedAt);
+                    request.successJson(accounts);
+                } catch (InterruptedException e) {
+                    request.error(PluginError.from(e));
+                } catch (MsalException e) {
+                    request.error(PluginError.from(e));
                 }
-            });
-        } catch (IllegalStateException e) {
-            MsalPlugin.this.loggerCallbackContext.error(e.getMessage());
+            }
+        });
+    }
+
+    // Reads the accounts again so watchAccounts subscribers and the account snapshot hear about
+    // changes, including ones made outside the app. Skipped while neither is in use.
+    private void checkAccounts() {
+        boolean singleAccount = SINGLE_ACCOUNT.equals(this.accountMode);
+        // Tokens cached in single account mode belong to whoever is signed in, and remembered
+        // failures hold only until the accounts change, so they need checking as well
+        if (!this.accountWatcher.hasSubscribers() && !this.accountSnapshot.isEnabled() && !(singleAccount && !this.tokenCache.isEmpty()) && !this.silentPolicy.hasNegativeResults()) {
+            return;
         }
+        if (singleAccount && this.appSingleClient != null) {
+            this.accountsCheckedAt = System.currentTimeMillis();
+            this.appSingleClient.getCurrentAccountAsync(new ISingleAccountPublicClientApplication.CurrentAccountCallback() {
+                @Override
+                public void onAccountLoaded(IAccount activeAccount) {
+                    MsalPlugin.this.accountsLoaded(currentAccountList(activeAccount), true);
+                }
 
-    }
+                // MSAL calls onAccountLoaded as well after this
+                @Override
+                public void onAccountChanged(IAccount priorAccount, IAccount currentAccount) {
+                    // Changed behind our back, so nothing cached for the old account can be trusted
+                    MsalPlugin.this.accountIndex.invalidate();
+                    MsalPlugin.this.invalidateTokens();
+                }
 
-    private void getAccounts() throws JSONException {
-        if (this.checkConfigInit()) {
-            cordova.getThreadPool().execute(new Runnable() {
+                @Override
+                public void onError(@NonNull MsalException exception) {}
+            });
+        } else if (MULTIPLE_ACCOUNTS.equals(this.accountMode) && this.appMultipleClient != null) {
+            this.runInBackground(WATCH_ACCOUNTS, MsalExecutor.BACKGROUND, new ErrorCallback() {
+                @Override
+                public void error(PluginError error) {}
+            }, new Runnable() {
                 @Override
                 public void run() {
-                    JSONArray accounts = new JSONArray();
                     try {
-                        if (SINGLE_ACCOUNT.equals(accountMode)) {
-                            if (MsalPlugin.this.appSingleClient.getCurrentAccount().getCurrentAccount() != null) {
-                                accounts.put(getAccountObject(MsalPlugin.this.appSingleClient.getCurrentAccount().getCurrentAccount()));
-                            }
-                        } else {
-                            for (IAccount account : MsalPlugin.this.appMultipleClient.getAccounts()) {
-                                accounts.put(getAccountObject(account));
-                            }
-                        }
-                        MsalPlugin.this.callbackContext.success(accounts);
-                    } catch (InterruptedException e) {
-                        MsalPlugin.this.callbackContext.error(e.getMessage());
-                    } catch (MsalException e) {
-                        MsalPlugin.this.callbackContext.error(e.getMessage());
+                        MsalPlugin.this.accountsLoaded(MsalPlugin.this.accountIndex.reload(MsalPlugin.this.accountLoader), false);
+                    } catch (InterruptedException | MsalException e) {
+                        e.printStackTrace();
                     }
                 }
             });
         }
     }
 
-    private void signinUserSilent(final String account) {
-        if (this.checkConfigInit()) {
-            if (SINGLE_ACCOUNT.equals(accountMode)) {
-                cordova.getThreadPool().execute(new Runnable() {
+    private void accountsLoaded(List<IAccount> accounts, boolean singleAccount) {
+        Set<String> accountIds = new HashSet<>();
+        for (IAccount account : accounts) {
+            accountIds.add(account.getId());
+        }
+        this.silentPolicy.accountsLoaded(accountIds);
+        this.accountWatcher.update(accounts, singleAccount);
+        this.accountSnapshot.update(accounts);
+    }
+
+    private static List<IAccount> currentAccountList(IAccount account) {
+        return account != null ? Collections.singletonList(account) : Collections.<IAccount>emptyList();
+    }
+
+    private void signinUserSilent(final MsalRequest request, final String account, ResultProjection projection, String authority) {
+        TokenCallback reply = this.replyWith(request, projection);
+        this.acquireTokenSilent(account, this.scopes, "".equals(authority) ? this.defaultAuthority : authority, false, MsalExecutor.FOREGROUND, request.getCorrelationId(), reply);
+        this.leaveOnAbandon(request, reply);
+    }
+
+    private void authenticatedFetch(MsalRequest request, JSONObject options, String account) throws JSONException, IOException {
+        AuthenticatedFetch fetch = new AuthenticatedFetch(options);
+        String[] fetchScopes = this.scopes;
+        JSONArray scopesList = options.optJSONArray("scopes");
+        if (scopesList != null && scopesList.length() > 0) {
+            fetchScopes = new String[scopesList.length()];
+            for (int i = 0; i < scopesList.length(); ++i) {
+                fetchScopes[i] = scopesList.getString(i);
+            }
+        }
+        String authority = "".equals(options.optString("authority", "")) ? this.defaultAuthority : options.getString("authority");
+        TokenCallback fetchWithToken = this.fetchWith(request, fetch, account, fetchScopes, authority, false);
+        this.acquireTokenSilent(account, fetchScopes, authority, false, MsalExecutor.FOREGROUND, request.getCorrelationId(), fetchWithToken);
+        this.leaveOnAbandon(request, fetchWithToken);
+    }
+
+    // Makes the request once the token is in hand, and once more with a fresh token if the API
+    // turned the first one down
+    private TokenCallback fetchWith(final MsalRequest request, final AuthenticatedFetch fetch, final String account, final String[] scopes, final String authority, final boolean refreshed) {
+        return new TokenCallback() {
+            @Override
+            public void success(final IAuthenticationResult result) {
+                MsalPlugin.this.runOn(MsalPlugin.this.fetchExecutor, AUTHENTICATED_FETCH, MsalExecutor.FOREGROUND, request, new Runnable() {
                     @Override
                     public void run() {
-                        try {
-                            String authority = MsalPlugin.this.appSingleClient.getConfiguration().getDefaultAuthority().getAuthorityURL().toString();
-                            if (MsalPlugin.this.appSingleClient.getCurrentAccount().getCurrentAccount() == null) {
-                                MsalPlugin.this.callbackContext.error("No account currently exists");
-                            } else {
-                                AcquireTokenSilentParameters params = new AcquireTokenSilentParameters.Builder()
-                                        .withScopes(Arrays.asList(MsalPlugin.this.scopes))
-                                        .fromAuthority(authority)
-                                        .forAccount(MsalPlugin.this.appSingleClient.getCurrentAccount().getCurrentAccount())
-                                        .withCallback(new SilentAuthenticationCallback() {
-                                            @Override
-                                            public void onSuccess(IAuthenticationResult authenticationResult) {
-                                                MsalPlugin.this.callbackContext.success(getAuthResult(authenticationResult));
-                                            }
-
-                                            @Override
-                                            public void onError(MsalException exception) {
-                                                MsalPlugin.this.callbackContext.error(exception.getMessage());
-                                            }
-                                        })
-                                        .build();
-                                MsalPlugin.this.appSingleClient.acquireTokenSilentAsync(params);
-                            }
-                        } catch (InterruptedException e) {
-                            MsalPlugin.this.callbackContext.error(e.getMessage());
-                        } catch (MsalException e) {
-                            MsalPlugin.this.callbackContext.error(e.getMessage());
+                        if (request.isSettled() || fetch.attempt(request, result.getAuthorizationHeader(), refreshed, MsalPlugin.this.metrics.get(AUTHENTICATED_FETCH).serialization)) {
+                            return;
                         }
+                        TokenCallback retry = MsalPlugin.this.fetchWith(request, fetch, account, scopes, authority, true);
+                        MsalPlugin.this.acquireTokenSilent(account, scopes, authority, true, MsalExecutor.FOREGROUND, request.getCorrelationId(), retry);
+                        MsalPlugin.this.leaveOnAbandon(request, retry);
                     }
                 });
-            } else {
-                cordova.getThreadPool().execute(new Runnable() {
-                    @Override
-                    public void run() {
-                        try {
-                            // Look for account first so we don't error out for one that doesn't exist
-                            boolean found = false;
-                            for (IAccount search : MsalPlugin.this.appMultipleClient.getAccounts()) {
-                                if (search.getId().equals(account)) {
-                                    found = true;
-                                    break;
-                                }
+            }
+
+            @Override
+            public void error(PluginError error) {
+                request.error(error);
+            }
+        };
+    }
+
+    // A caller that gave up stops waiting on its token, so a call MSAL never answers doesn't keep
+    // catching everyone who asks for the same token after it
+    private void leaveOnAbandon(MsalRequest request, final TokenCallback callback) {
+        request.onAbandoned(new Runnable() {
+            @Override
+            public void run() {
+                MsalPlugin.this.silentRequests.leave(callback);
+            }
+        });
+    }
+
+    // Results are cached and shared between callers as MSAL returned them, so each caller's
+    // reply is encoded with its own projection on the way out
+    private TokenCallback replyWith(final MsalRequest request, final ResultProjection projection) {
+        return new TokenCallback() {
+            @Override
+            public void success(IAuthenticationResult result) {
+                long serializationStartedAt = System.nanoTime();
+                String json = MsalPlugin.this.resultSerializer.authResult(result, projection);
+                MsalPlugin.this.metrics.get(request.getAction()).serialization.recordSince(serializationStartedAt);
+                request.successJson(json);
+            }
+
+            @Override
+            public void error(PluginError error) {
+                request.error(error);
+            }
+        };
+    }
+
+    private void acquireTokenSilent(final String account, final String[] scopes, final String authority, final boolean forceRefresh, final int priority, final UUID correlationId, final TokenCallback callback) {
+        final String accountKey;
+        if (SINGLE_ACCOUNT.equals(this.accountMode)) {
+            accountKey = CURRENT_ACCOUNT;
+        } else {
+            // Keyed by whatever the caller named the account by, id or username, so the key can't
+            // change depending on whether the account index happens to be loaded
+            accountKey = account;
+        }
+        final String cacheKey = TokenCache.key(accountKey, scopes, authority);
+        if (!forceRefresh) {
+            // Serve a still-valid token straight from the plugin cache without touching MSAL
+            IAuthenticationResult cached = this.tokenCache.get(cacheKey);
+            if (cached != null) {
+                this.metrics.get(SIGN_IN_SILENT).cacheHits.incrementAndGet();
+                callback.success(cached);
+                // Cached under whoever is signed in, and the broker or another app may have
+                // switched the current account since. Checked now and then rather than on every
+                // hit, which would put MSAL back on the path the cache is there to skip.
+                if (SINGLE_ACCOUNT.equals(this.accountMode) && System.currentTimeMillis() - this.accountsCheckedAt > ACCOUNT_RECHECK_MILLIS) {
+                    this.checkAccounts();
+                }
+                return;
+            }
+        }
+        this.acquireUncached(account, accountKey, cacheKey, scopes, authority, forceRefresh, priority, correlationId, callback);
+    }
+
+    private void acquireUncached(String account, String accountKey, String cacheKey, String[] scopes, String authority, boolean forceRefresh, int priority, UUID correlationId, TokenCallback callback) {
+        // Don't ask MSAL again for an answer only the user can change, or while the authority's
+        // circuit breaker is open
+        PluginError knownError = this.silentPolicy.check(cacheKey, authority);
+        if (knownError != null) {
+            callback.error(knownError);
+            return;
+        }
+        // Only the first caller for this account, scope set and authority goes to MSAL; anyone
+        // asking for the same token meanwhile waits for that result. A forced refresh has its own
+        // flight, since joining a normal one could hand back the token it's trying to replace.
+        if (!this.silentRequests.join(flightKey(cacheKey, forceRefresh), callback)) {
+            return;
+        }
+        new SilentAcquisition(account, accountKey, cacheKey, scopes, authority, forceRefresh, priority, correlationId, this.tokenCache.generation()).start();
+    }
+
+    private static String flightKey(String cacheKey, boolean forceRefresh) {
+        return forceRefresh ? cacheKey + "|refresh" : cacheKey;
+    }
+
+    // One trip to MSAL for everyone waiting on a cache key, retried after a backoff if the
+    // failure looks transient
+    private final class SilentAcquisition {
+        private final String account;
+        private final String accountKey;
+        private final String cacheKey;
+        private final String flightKey;
+        private final String[] scopes;
+        private final String authority;
+        private final boolean forceRefresh;
+        private final int priority;
+        private final UUID correlationId;
+        private final long cacheGeneration;
+        private int attempt = 0;
+
+        SilentAcquisition(String account, String accountKey, String cacheKey, String[] scopes, String authority, boolean forceRefresh, int priority, UUID correlationId, long cacheGeneration) {
+            this.account = account;
+            this.accountKey = accountKey;
+            this.cacheKey = cacheKey;
+            this.flightKey = flightKey(cacheKey, forceRefresh);
+            this.scopes = scopes;
+            this.authority = authority;
+            this.forceRefresh = forceRefresh;
+            this.priority = priority;
+            this.correlationId = correlationId;
+            this.cacheGeneration = cacheGeneration;
+        }
+
+        void start() {
+            // Everyone waiting on this token has to hear about it if the executor turns it away
+            MsalPlugin.this.runInBackground(SIGN_IN_SILENT, this.priority, new ErrorCallback() {
+                @Override
+                public void error(PluginError error) {
+                    MsalPlugin.this.failSilentRequests(SilentAcquisition.this.flightKey, error);
+                }
+            }, new Runnable() {
+                @Override
+                public void run() {
+                    SilentAcquisition.this.run();
+                }
+            });
+        }
+
+        private void run() {
+            final long msalStartedAt = System.nanoTime();
+            try {
+                IAccount msalAccount;
+                if (SINGLE_ACCOUNT.equals(MsalPlugin.this.accountMode)) {
+                    msalAccount = MsalPlugin.this.appSingleClient.getCurrentAccount().getCurrentAccount();
+                    if (msalAccount == null) {
+                        this.notFound(new PluginError(PluginError.NO_ACCOUNT, "No account currently exists"));
+                        return;
+                    }
+                } else {
+                    // Look for account first so we don't error out for one that doesn't exist
+                    msalAccount = MsalPlugin.this.accountIndex.find(this.account, MsalPlugin.this.accountLoader);
+                    if (msalAccount == null) {
+                        this.notFound(new PluginError(PluginError.NO_ACCOUNT, "Account not found"));
+                        return;
+                    }
+                }
+                AcquireTokenSilentParameters params = new AcquireTokenSilentParameters.Builder()
+                        .withScopes(Arrays.asList(this.scopes))
+                        .fromAuthority(this.authority)
+                        .forAccount(msalAccount)
+                        .forceRefresh(this.forceRefresh)
+                        .withCorrelationId(this.correlationId)
+                        .withCallback(new SilentAuthenticationCallback() {
+                            @Override
+                            public void onSuccess(IAuthenticationResult authenticationResult) {
+                                SilentAcquisition acquisition = SilentAcquisition.this;
+                                MsalPlugin.this.metrics.get(SIGN_IN_SILENT).msal.recordSince(msalStartedAt);
+                                MsalPlugin.this.silentPolicy.succeeded(acquisition.authority);
+                                MsalPlugin.this.cacheAuthResult(acquisition.accountKey, acquisition.scopes, acquisition.authority, acquisition.cacheGeneration, authenticationResult);
+                                MsalPlugin.this.completeSilentRequests(acquisition.flightKey, authenticationResult);
                             }
-                            if (!found) {
-                                MsalPlugin.this.callbackContext.error("Account not found");
-                                return;
+
+                            @Override
+                            public void onError(MsalException exception) {
+                                MsalPlugin.this.metrics.get(SIGN_IN_SILENT).msal.recordSince(msalStartedAt);
+                                SilentAcquisition.this.failed(PluginError.from(exception));
                             }
-                            String authority = MsalPlugin.this.appMultipleClient.getConfiguration().getDefaultAuthority().getAuthorityURL().toString();
-                            AcquireTokenSilentParameters params = new AcquireTokenSilentParameters.Builder()
-                                    .withScopes(Arrays.asList(MsalPlugin.this.scopes))
-                                    .fromAuthority(authority)
-                                    .forAccount(MsalPlugin.this.appMultipleClient.getAccount(account))
-                                    .withCallback(new SilentAuthenticationCallback() {
-                                        @Override
-                                        public void onSuccess(IAuthenticationResult authenticationResult) {
-                                            MsalPlugin.this.callbackContext.success(getAuthResult(authenticationResult));
-                                        }
-
-                                        @Override
-                                        public void onError(MsalException exception) {
-                                            MsalPlugin.this.callbackContext.error(exception.getMessage());
-                                        }
-                                    })
-                                    .build();
-                            MsalPlugin.this.appMultipleClient.acquireTokenSilentAsync(params);
-                        } catch (InterruptedException e) {
-                            MsalPlugin.this.callbackContext.error(e.getMessage());
-                        } catch (MsalException e) {
-                            MsalPlugin.this.callbackContext.error(e.getMessage());
-                        }
-                    }
-                });
+                        })
+                        .build();
+                MsalPlugin.this.clientFor(this.authority).acquireTokenSilentAsync(params);
+            } catch (InterruptedException | MsalException | IOException | JSONException e) {
+                this.failed(PluginError.from(e));
             }
         }
+
+        // Not remembered: finding out costs no more than a local read, and an account added by
+        // the broker or another app should be found by the very next call
+        private void notFound(PluginError error) {
+            MsalPlugin.this.failSilentRequests(this.flightKey, error);
+        }
+
+        private void failed(PluginError error) {
+            MsalPlugin.this.silentPolicy.failed(this.cacheKey, this.accountKey, this.authority, error);
+            long delay = MsalPlugin.this.silentPolicy.retryDelay(error, this.authority, this.attempt);
+            if (delay < 0) {
+                MsalPlugin.this.failSilentRequests(this.flightKey, error);
+                return;
+            }
+            this.attempt++;
+            MsalPlugin.this.dispatcher.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    SilentAcquisition.this.start();
+                }
+            }, delay);
+        }
     }
 
-    private void signinUserInteractive(final String loginHint, final List<Map.Entry<String, String>> authorizationQueryStringParameters, final Prompt prompt, final String[] otherScopesToAuthorize) {
-        if (this.checkConfigInit()) {
-            if (SINGLE_ACCOUNT.equals(this.accountMode)) {
-                cordova.getThreadPool().execute(new Runnable() {
-                    @Override
-                    public void run() {
-                        AcquireTokenParameters.Builder params = new AcquireTokenParameters.Builder()
-                                .startAuthorizationFromActivity(MsalPlugin.this.activity)
-                                .withScopes(Arrays.asList(MsalPlugin.this.scopes))
-                                .withOtherScopesToAuthorize(Arrays.asList(otherScopesToAuthorize))
-                                .withPrompt(prompt)
-                                .withCallback(new AuthenticationCallback() {
-                                    @Override
-                                    public void onCancel() {
-                                        MsalPlugin.this.callbackContext.error("Login cancelled.");
-                                    }
+    private void acquireTokensBatch(final MsalRequest request, final JSONArray entries) throws JSONException {
+        BatchTokenRequest batch = new BatchTokenRequest(request, MAX_PARALLEL_BATCH_ENTRIES, this.resultSerializer);
+        for (int i = 0; i < entries.length(); ++i) {
+            JSONObject entry = entries.getJSONObject(i);
+            final String account = entry.optString("account", "");
+            final String authority = "".equals(entry.optString("authority", "")) ? this.defaultAuthority : entry.getString("authority");
+            String[] entryScopes = this.scopes;
+            JSONArray scopesList = entry.optJSONArray("scopes");
+            if (scopesList != null && scopesList.length() > 0) {
+                entryScopes = new String[scopesList.length()];
+                for (int j = 0; j < scopesList.length(); ++j) {
+                    entryScopes[j] = scopesList.getString(j);
+                }
+            }
+            final String[] scopes = entryScopes;
+            batch.add(new BatchTokenRequest.Entry() {
+                @Override
+                public void acquire(TokenCallback callback) {
+                    MsalPlugin.this.acquireTokenSilent(account, scopes, authority, false, MsalExecutor.FOREGROUND, UUID.randomUUID(), callback);
+                    MsalPlugin.this.leaveOnAbandon(request, callback);
+                }
+            }, ResultProjection.from(entry.optJSONObject("fields")));
+        }
+        batch.start();
+    }
 
-                                    @Override
-                                    public void onSuccess(IAuthenticationResult authenticationResult) {
-                                        MsalPlugin.this.callbackContext.success(getAuthResult(authenticationResult));
-                                    }
+    private void completeSilentRequests(String flightKey, IAuthenticationResult result) {
+        for (TokenCallback waiter : this.silentRequests.complete(flightKey)) {
+            waiter.success(result);
+        }
+    }
 
-                                    @Override
-                                    public void onError(MsalException e) {
-                                        MsalPlugin.this.callbackContext.error(e.getMessage());
-                                    }
-                                });
-                        if (!loginHint.equals("")) {
-                            params = params.withLoginHint(loginHint);
-                        }
-                        if (!authorizationQueryStringParameters.isEmpty()) {
-                            params = params.withAuthorizationQueryStringParameters(authorizationQueryStringParameters);
-                        }
-                        MsalPlugin.this.appSingleClient.acquireToken(params.build());
+    private void failSilentRequests(String flightKey, PluginError error) {
+        for (TokenCallback waiter : this.silentRequests.complete(flightKey)) {
+            waiter.error(error);
+        }
+    }
+
+    private void signinUserInteractive(final MsalRequest request, final String loginHint, final List<Map.Entry<String, String>> authorizationQueryStringParameters, final Prompt prompt, final String[] otherScopesToAuthorize, final String authority) {
+        if (SINGLE_ACCOUNT.equals(this.accountMode)) {
+            this.runInBackground(SIGN_IN_INTERACTIVE, MsalExecutor.INTERACTIVE, request, new Runnable() {
+                @Override
+                public void run() {
+                    final MsalMetrics.Operation metrics = MsalPlugin.this.metrics.get(SIGN_IN_INTERACTIVE);
+                    final long msalStartedAt = System.nanoTime();
+                    AcquireTokenParameters.Builder params = new AcquireTokenParameters.Builder()
+                            .startAuthorizationFromActivity(MsalPlugin.this.activity)
+                            .withScopes(Arrays.asList(MsalPlugin.this.scopes))
+                            .withOtherScopesToAuthorize(Arrays.asList(otherScopesToAuthorize))
+                            .withPrompt(prompt)
+                            .withCorrelationId(request.getCorrelationId())
+                            .withCallback(new AuthenticationCallback() {
+                                @Override
+                                public void onCancel() {
+                                    metrics.msal.recordSince(msalStartedAt);
+                                    request.error(new PluginError(PluginError.USER_CANCELLED, "Login cancelled."));
+                                }
+
+                                @Override
+                                public void onSuccess(IAuthenticationResult authenticationResult) {
+                                    metrics.msal.recordSince(msalStartedAt);
+                                    MsalPlugin.this.accountIndex.invalidate();
+                                    MsalPlugin.this.invalidateTokens();
+                                    MsalPlugin.this.accountSnapshot.tokenAcquired(authenticationResult);
+                                    MsalPlugin.this.checkAccounts();
+                                    long serializationStartedAt = System.nanoTime();
+                                    String result = MsalPlugin.this.resultSerializer.authResult(authenticationResult, ResultProjection.ALL);
+                                    metrics.serialization.recordSince(serializationStartedAt);
+                                    request.successJson(result);
+                                }
+
+                                @Override
+                                public void onError(MsalException e) {
+                                    metrics.msal.recordSince(msalStartedAt);
+                                    request.error(PluginError.from(e));
+                                }
+                            });
+                    if (!loginHint.equals("")) {
+                        params = params.withLoginHint(loginHint);
                     }
-                });
-            } else {
-                cordova.getThreadPool().execute(new Runnable() {
-                    @Override
-                    public void run() {
-                        AcquireTokenParameters.Builder params = new AcquireTokenParameters.Builder()
-                                .startAuthorizationFromActivity(MsalPlugin.this.activity)
-                                .withScopes(Arrays.asList(MsalPlugin.this.scopes))
-                                .withOtherScopesToAuthorize(Arrays.asList(otherScopesToAuthorize))
-                                .withPrompt(prompt)
-                                .withCallback(new AuthenticationCallback() {
-                                    @Override
-                                    public void onCancel() {
-                                        MsalPlugin.this.callbackContext.error("Login cancelled.");
-                                    }
+                    if (!authorizationQueryStringParameters.isEmpty()) {
+                        params = params.withAuthorizationQueryStringParameters(authorizationQueryStringParameters);
+                    }
+                    if (!"".equals(authority)) {
+                        params = params.fromAuthority(authority);
+                    }
+                    try {
+                        MsalPlugin.this.clientFor(authority).acquireToken(params.build());
+                    } catch (InterruptedException | MsalException | IOException | JSONException e) {
+                        request.error(PluginError.from(e));
+                    }
+                }
+            });
+        } else {
+            this.runInBackground(SIGN_IN_INTERACTIVE, MsalExecutor.INTERACTIVE, request, new Runnable() {
+                @Override
+                public void run() {
+                    final MsalMetrics.Operation metrics = MsalPlugin.this.metrics.get(SIGN_IN_INTERACTIVE);
+                    final long msalStartedAt = System.nanoTime();
+                    AcquireTokenParameters.Builder params = new AcquireTokenParameters.Builder()
+                            .startAuthorizationFromActivity(MsalPlugin.this.activity)
+                            .withScopes(Arrays.asList(MsalPlugin.this.scopes))
+                            .withOtherScopesToAuthorize(Arrays.asList(otherScopesToAuthorize))
+                            .withPrompt(prompt)
+                            .withCorrelationId(request.getCorrelationId())
+                            .withCallback(new AuthenticationCallback() {
+                                @Override
+                                public void onCancel() {
+                                    metrics.msal.recordSince(msalStartedAt);
+                                    request.error(new PluginError(PluginError.USER_CANCELLED, "Login cancelled."));
+                                }
 
-                                    @Override
-                                    public void onSuccess(IAuthenticationResult authenticationResult) {
-                                        MsalPlugin.this.callbackContext.success(getAuthResult(authenticationResult));
-                                    }
+                                @Override
+                                public void onSuccess(IAuthenticationResult authenticationResult) {
+                                    metrics.msal.recordSince(msalStartedAt);
+                                    MsalPlugin.this.accountIndex.invalidate();
+                                    MsalPlugin.this.invalidateTokens(authenticationResult.getAccount());
+                                    MsalPlugin.this.accountSnapshot.tokenAcquired(authenticationResult);
+                                    MsalPlugin.this.checkAccounts();
+                                    long serializationStartedAt = System.nanoTime();
+                                    String result = MsalPlugin.this.resultSerializer.authResult(authenticationResult, ResultProjection.ALL);
+                                    metrics.serialization.recordSince(serializationStartedAt);
+                                    request.successJson(result);
+                                }
 
-                                    @Override
-                                    public void onError(MsalException e) {
-                                        MsalPlugin.this.callbackContext.error(e.getMessage());
-                                    }
-                                });
-                        if (!loginHint.equals("")) {
-                            params = params.withLoginHint(loginHint);
-                        }
-                        if (!authorizationQueryStringParameters.isEmpty()) {
-                            params = params.withAuthorizationQueryStringParameters(authorizationQueryStringParameters);
-                        }
-                        MsalPlugin.this.appMultipleClient.acquireToken(params.build());
+                                @Override
+                                public void onError(MsalException e) {
+                                    metrics.msal.recordSince(msalStartedAt);
+                                    request.error(PluginError.from(e));
+                                }
+                            });
+                    if (!loginHint.equals("")) {
+                        params = params.withLoginHint(loginHint);
                     }
-                });
-            }
+                    if (!authorizationQueryStringParameters.isEmpty()) {
+                        params = params.withAuthorizationQueryStringParameters(authorizationQueryStringParameters);
+                    }
+                    if (!"".equals(authority)) {
+                        params = params.fromAuthority(authority);
+                    }
+                    try {
+                        MsalPlugin.this.clientFor(authority).acquireToken(params.build());
+                    } catch (InterruptedException | MsalException | IOException | JSONException e) {
+                        request.error(PluginError.from(e));
+                    }
+                }
+            });
         }
     }
 
-    private void signOut(final String account) {
-        this.checkConfigInit();
+    private void signOut(final MsalRequest request, final String account) {
         if (SINGLE_ACCOUNT.equals(this.accountMode)) {
-            cordova.getThreadPool().execute(new Runnable() {
+            this.runInBackground(SIGN_OUT, MsalExecutor.FOREGROUND, request, new Runnable() {
                 @Override
                 public void run() {
+                    final MsalMetrics.Operation metrics = MsalPlugin.this.metrics.get(SIGN_OUT);
+                    final long msalStartedAt = System.nanoTime();
                     try {
                         // Look for account first so we don't error out for one that doesn't exist
-                        if(MsalPlugin.this.appMultipleClient != null) {
-                            boolean found = false;
-                            for (IAccount search : MsalPlugin.this.appMultipleClient.getAccounts()) {
-                                if (search.getId().equals(account)) {
-                                    found = true;
-                                    break;
-                                }
-                            }
-                            if (!found) {
-                                MsalPlugin.this.callbackContext.error("Account not found");
-                                return;
-                            }
+                        if (MsalPlugin.this.appMultipleClient != null && MsalPlugin.this.accountIndex.find(account, MsalPlugin.this.accountLoader) == null) {
+                            request.error(new PluginError(PluginError.NO_ACCOUNT, "Account not found"));
+                            return;
                         }
                         if (MsalPlugin.this.appSingleClient.getCurrentAccount().getCurrentAccount() != null) {
                             MsalPlugin.this.appSingleClient.signOut(new ISingleAccountPublicClientApplication.SignOutCallback() {
                                 @Override
                                 public void onSignOut() {
-                                    MsalPlugin.this.callbackContext.success();
+                                    metrics.msal.recordSince(msalStartedAt);
+                                    MsalPlugin.this.accountIndex.invalidate();
+                                    MsalPlugin.this.invalidateTokens();
+                                    MsalPlugin.this.checkAccounts();
+                                    request.success();
                                 }
 
                                 @Override
                                 public void onError(@NonNull MsalException e) {
-                                    MsalPlugin.this.callbackContext.error(e.getMessage());
+                                    metrics.msal.recordSince(msalStartedAt);
+                                    request.error(PluginError.from(e));
                                 }
                             });
                         } else {
-                            MsalPlugin.this.callbackContext.success();
+                            request.success();
                         }
                     } catch (InterruptedException e) {
-                        MsalPlugin.this.callbackContext.error(e.getMessage());
+                        request.error(PluginError.from(e));
                     } catch (MsalException e) {
-                        MsalPlugin.this.callbackContext.error(e.getMessage());
+                        request.error(PluginError.from(e));
                     }
                 }
             });
         } else {
-            cordova.getThreadPool().execute(new Runnable() {
+            this.runInBackground(SIGN_OUT, MsalExecutor.FOREGROUND, request, new Runnable() {
                 @Override
                 public void run() {
+                    final MsalMetrics.Operation metrics = MsalPlugin.this.metrics.get(SIGN_OUT);
+                    final long msalStartedAt = System.nanoTime();
                     try {
-                        MsalPlugin.this.appMultipleClient.removeAccount(MsalPlugin.this.appMultipleClient.getAccount(account),
+                        final IAccount removedAccount = MsalPlugin.this.accountIndex.find(account, MsalPlugin.this.accountLoader);
+                        if (removedAccount == null) {
+                            request.error(new PluginError(PluginError.NO_ACCOUNT, "Account not found"));
+                            return;
+                        }
+                        MsalPlugin.this.appMultipleClient.removeAccount(removedAccount,
                                 new IMultipleAccountPublicClientApplication.RemoveAccountCallback() {
                                     @Override
                                     public void onRemoved() {
-                                        MsalPlugin.this.callbackContext.success();
+                                        metrics.msal.recordSince(msalStartedAt);
+                                        MsalPlugin.this.accountIndex.invalidate();
+                                        MsalPlugin.this.invalidateTokens(removedAccount);
+                                        MsalPlugin.this.checkAccounts();
+                                        request.success();
                                     }
 
                                     @Override
                                     public void onError(@NonNull MsalException e) {
-                                        MsalPlugin.this.callbackContext.error(e.getMessage());
+                                        metrics.msal.recordSince(msalStartedAt);
+                                        request.error(PluginError.from(e));
                                     }
                                 });
                     } catch (InterruptedException e) {
-                        MsalPlugin.this.callbackContext.error(e.getMessage());
+                        request.error(PluginError.from(e));
                     } catch (MsalException e) {
-                        MsalPlugin.this.callbackContext.error(e.getMessage());
+                        request.error(PluginError.from(e));
                     }
                 }
             });
@@ -539,74 +1291,89 @@ public class MsalPlugin extends CordovaPlugin {
     }
     
 
-    private File createConfigFile(String data) {
-        File config = new File(this.context.getFilesDir() + "auth_config.json");
-        try {
-            FileWriter writer = new FileWriter(config, false);
-            writer.write(data);
-            writer.flush();
-            writer.close();
+    private File getConfigFile(String data, boolean pooled) throws IOException {
+        // MSAL can only read its configuration from a file. Name it after a hash of its contents so
+        // a file written on an earlier launch can be handed to MSAL again without rewriting it.
+        File config = new File(this.context.getFilesDir(), (pooled ? POOLED_CONFIG_FILE_PREFIX : CONFIG_FILE_PREFIX) + fingerprint(data) + ".json");
+        if (config.exists()) {
             return config;
-        } catch (IOException e) {
-            MsalPlugin.this.callbackContext.error(e.getMessage());
+        }
+        File temp = new File(this.context.getFilesDir(), config.getName() + ".tmp");
+        FileWriter writer = new FileWriter(temp, false);
+        writer.write(data);
+        writer.flush();
+        writer.close();
+        if (!temp.renameTo(config)) {
+            throw new IOException("Unable to write MSAL configuration file");
+        }
+        // A new main configuration makes every earlier file stale, pooled ones included
+        File[] oldConfigs = pooled ? null : this.context.getFilesDir().listFiles();
+        if (oldConfigs != null) {
+            for (File oldConfig : oldConfigs) {
+                if (oldConfig.getName().startsWith(CONFIG_FILE_PREFIX) && !oldConfig.equals(config)) {
+                    oldConfig.delete();
+                }
+            }
         }
         return config;
     }
 
-    private boolean checkConfigInit() {
-        if (!this.isInit) {
-            this.callbackContext.error("No configuration has been set yet. Call msalInit() before calling this.");
-            return false;
+    private static String fingerprint(String data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data.getBytes("UTF-8"));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException | UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
         }
-        return true;
     }
 
-    private JSONObject getAuthResult(IAuthenticationResult result) {
-        JSONObject resultObj = new JSONObject();
-        try {
-            resultObj.put("token", result.getAccessToken());
-            resultObj.put("account", getAccountObject(result.getAccount()));
-            resultObj.put("idToken", result.getAccount().getIdToken());
-        } catch (JSONException e) {
-            MsalPlugin.this.callbackContext.error(e.getMessage());
+    private void cacheAuthResult(final String account, final String[] scopes, final String authority, long cacheGeneration, IAuthenticationResult result) {
+        String cacheKey = TokenCache.key(account, scopes, authority);
+        this.accountSnapshot.tokenAcquired(result);
+        if (result.getExpiresOn() != null && this.tokenCache.put(cacheKey, result, result.getExpiresOn().getTime(), cacheGeneration)) {
+            this.refreshScheduler.schedule(cacheKey, result.getExpiresOn().getTime(), new Runnable() {
+                @Override
+                public void run() {
+                    if (!MsalPlugin.this.tokenCache.contains(cacheKey)) {
+                        return;
+                    }
+                    MsalPlugin.this.acquireTokenSilent(account, scopes, authority, true, MsalExecutor.BACKGROUND, UUID.randomUUID(), new TokenCallback() {
+                        @Override
+                        public void success(IAuthenticationResult result) {
+                            // The refreshed token is already cached and its next refresh scheduled
+                        }
+
+                        @Override
+                        public void error(PluginError error) {
+                            // Leave it to the next foreground call to surface the failure
+                        }
+                    });
+                }
+            });
         }
-        return resultObj;
     }
 
-    private JSONObject getAccountObject(IAccount account) {
-        JSONObject acct = new JSONObject();
-        try {
-            acct.put("id", account.getId());
-            acct.put("username", account.getUsername());
-            acct.put("claims", processClaims(Objects.requireNonNull(account.getClaims())));
-        } catch (JSONException e) {
-            MsalPlugin.this.callbackContext.error(e.getMessage());
-        }
-        return acct;
+    private void invalidateTokens() {
+        this.resultSerializer.clear();
+        this.silentPolicy.clear();
+        this.tokenCache.clear();
+        this.refreshScheduler.cancelAll();
     }
 
-    private JSONArray processClaims(Map<String, ?> claims) {
-        JSONArray claimsArr = new JSONArray();
-        if (claims != null) {
-            for (Map.Entry<String, ?> claim : claims.entrySet()) {
-                try {
-                    JSONObject claimObj = new JSONObject();
-                    claimObj.put("key", claim.getKey());
-                    if (claim.getValue() instanceof ArrayList) {
-                        JSONArray arr = new JSONArray();
-                        for (Object obj : (ArrayList) claim.getValue()) {
-                            arr.put(obj);
-                        }
-                        claimObj.put("value", arr);
-                    } else {
-                        claimObj.put("value", claim.getValue());
-                    }
-                    claimsArr.put(claimObj);
-                } catch (JSONException e) {
-                    MsalPlugin.this.callbackContext.error(e.getMessage());
-                }
-            }
+    private void invalidateTokens(IAccount account) {
+        this.resultSerializer.clear();
+        // Tokens are keyed by whichever of the two the caller named the account by
+        this.silentPolicy.clearAccount(account.getId());
+        this.tokenCache.invalidateAccount(account.getId());
+        this.refreshScheduler.cancelAccount(account.getId());
+        if (account.getUsername() != null) {
+            this.silentPolicy.clearAccount(account.getUsername());
+            this.tokenCache.invalidateAccount(account.getUsername());
+            this.refreshScheduler.cancelAccount(account.getUsername());
         }
-        return claimsArr;
     }
-}
\ No newline at end of file
+}
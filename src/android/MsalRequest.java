@@ -0,0 +1,173 @@
+package com.wrobins.cordova.plugin;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A single in-flight plugin call. Each call keeps its own callback context and correlation id so
+ * async MSAL callbacks always reply to the JS promise that started them, and a reply can only be
+ * delivered once.
+ */
+final class MsalRequest implements ErrorCallback {
+    private final RequestDispatcher dispatcher;
+    private final String action;
+    private final String id;
+    private final UUID correlationId;
+    private final CallbackContext callbackContext;
+    private final AtomicBoolean settled = new AtomicBoolean(false);
+    private final long startedAt = System.nanoTime();
+    private final List<Runnable> abandonHandlers = new ArrayList<>();
+    private ScheduledFuture<?> deadline;
+
+    MsalRequest(RequestDispatcher dispatcher, String action, String callId, CallbackContext callbackContext) {
+        this.dispatcher = dispatcher;
+        this.action = action;
+        this.correlationId = UUID.randomUUID();
+        this.id = callId != null && !"".equals(callId) ? callId : this.correlationId.toString();
+        this.callbackContext = callbackContext;
+    }
+
+    String getId() {
+        return this.id;
+    }
+
+    UUID getCorrelationId() {
+        return this.correlationId;
+    }
+
+    String getAction() {
+        return this.action;
+    }
+
+    long getStartedAt() {
+        return this.startedAt;
+    }
+
+    boolean isSettled() {
+        return this.settled.get();
+    }
+
+    void success() {
+        if (this.settle(true)) {
+            this.callbackContext.success();
+        }
+    }
+
+    void success(JSONObject message) {
+        if (this.settle(true)) {
+            this.callbackContext.success(message);
+        }
+    }
+
+    void success(JSONArray message) {
+        if (this.settle(true)) {
+            this.callbackContext.success(message);
+        }
+    }
+
+    /**
+     * Replies with JSON that was already encoded by {@link JsonEncoder}.
+     */
+    void successJson(String json) {
+        this.sendPluginResult(new EncodedResult(PluginResult.Status.OK, json));
+    }
+
+    @Override
+    public void error(PluginError error) {
+        if (this.settle(false)) {
+            this.sendError(error);
+        }
+    }
+
+    boolean usesStructuredErrors() {
+        return this.dispatcher.usesStructuredErrors();
+    }
+
+    /**
+     * Sends a result without settling the request when it asks to keep the callback, so progress
+     * updates can be streamed before the final reply.
+     */
+    void sendPluginResult(PluginResult result) {
+        if (result.getKeepCallback()) {
+            if (!this.settled.get()) {
+                this.callbackContext.sendPluginResult(result);
+            }
+        } else if (this.settle(result.getStatus() == PluginResult.Status.OK.ordinal())) {
+            this.callbackContext.sendPluginResult(result);
+        }
+    }
+
+    /**
+     * Registers cleanup to run if the request times out or is cancelled before the work behind it
+     * finishes, such as taking its callback back out of shared state.
+     */
+    void onAbandoned(Runnable handler) {
+        synchronized (this.abandonHandlers) {
+            if (!this.settled.get()) {
+                this.abandonHandlers.add(handler);
+                return;
+            }
+        }
+        // Already over, and cleaning up after a request that finished normally is harmless
+        handler.run();
+    }
+
+    /**
+     * Fails the request without waiting for the work behind it, which may still finish later and
+     * have its reply dropped.
+     *
+     * @return false if the request had already settled
+     */
+    boolean abandon(PluginError error) {
+        if (!this.settle(false)) {
+            return false;
+        }
+        this.sendError(error);
+        List<Runnable> handlers;
+        synchronized (this.abandonHandlers) {
+            handlers = new ArrayList<>(this.abandonHandlers);
+        }
+        for (Runnable handler : handlers) {
+            handler.run();
+        }
+        return true;
+    }
+
+    synchronized void setDeadline(ScheduledFuture<?> deadline) {
+        this.deadline = deadline;
+        if (this.settled.get()) {
+            deadline.cancel(false);
+        }
+    }
+
+    private void sendError(PluginError error) {
+        if (this.usesStructuredErrors()) {
+            JsonEncoder encoder = JsonEncoder.obtain();
+            error.writeTo(encoder);
+            this.callbackContext.sendPluginResult(new EncodedResult(PluginResult.Status.ERROR, encoder.finish()));
+        } else {
+            this.callbackContext.error(error.message);
+        }
+    }
+
+    private boolean settle(boolean succeeded) {
+        if (this.settled.compareAndSet(false, true)) {
+            synchronized (this) {
+                if (this.deadline != null) {
+                    this.deadline.cancel(false);
+                }
+            }
+            this.dispatcher.complete(this, succeeded);
+            return true;
+        }
+        return false;
+    }
+}
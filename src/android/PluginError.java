@@ -0,0 +1,106 @@
+package com.wrobins.cordova.plugin;
+
+import com.microsoft.identity.client.exception.MsalClientException;
+import com.microsoft.identity.client.exception.MsalException;
+import com.microsoft.identity.client.exception.MsalServiceException;
+import com.microsoft.identity.client.exception.MsalUiRequiredException;
+
+import org.json.JSONException;
+
+import java.net.MalformedURLException;
+import java.net.ProtocolException;
+
+/**
+ * An error sent back to JS, with a stable code apps can branch on next to the message. MSAL
+ * exceptions are sorted into codes by what the caller should do about them, and keep MSAL's own
+ * error code alongside.
+ */
+final class PluginError {
+    static final String INTERACTION_REQUIRED = "interaction_required";
+    static final String NO_ACCOUNT = "no_account";
+    static final String USER_CANCELLED = "user_cancelled";
+    // Network trouble or an overloaded token endpoint, worth retrying later
+    static final String TRANSIENT = "transient";
+    static final String CIRCUIT_OPEN = "circuit_open";
+    static final String SERVICE_ERROR = "service_error";
+    static final String CLIENT_ERROR = "client_error";
+    static final String NOT_INITIALIZED = "not_initialized";
+    static final String INIT_FAILED = "init_failed";
+    static final String PREWARM_FAILED = "prewarm_failed";
+    static final String REJECTED = "rejected";
+    static final String TIMEOUT = "timeout";
+    static final String CANCELLED = "cancelled";
+    static final String INVALID_ARGUMENT = "invalid_argument";
+    static final String PLUGIN_ERROR = "plugin_error";
+
+    final String code;
+    final String message;
+    final String msalCode;
+    final long retryAfterMillis;
+
+    PluginError(String code, String message) {
+        this(code, message, null, 0);
+    }
+
+    PluginError(String code, String message, String msalCode, long retryAfterMillis) {
+        this.code = code;
+        this.message = message != null ? message : code;
+        this.msalCode = msalCode;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    static PluginError from(Exception e) {
+        if (e instanceof MsalUiRequiredException) {
+            MsalException msalException = (MsalException) e;
+            String code = MsalUiRequiredException.NO_ACCOUNT_FOUND.equals(msalException.getErrorCode()) ? NO_ACCOUNT : INTERACTION_REQUIRED;
+            return new PluginError(code, e.getMessage(), msalException.getErrorCode(), 0);
+        }
+        if (e instanceof MsalServiceException) {
+            int status = ((MsalServiceException) e).getHttpStatusCode();
+            String code = status == 429 || status >= 500 ? TRANSIENT : SERVICE_ERROR;
+            return new PluginError(code, e.getMessage(), ((MsalException) e).getErrorCode(), 0);
+        }
+        if (e instanceof MsalClientException) {
+            String msalCode = ((MsalException) e).getErrorCode();
+            String code = CLIENT_ERROR;
+            if (MsalClientException.IO_ERROR.equals(msalCode) || MsalClientException.DEVICE_NETWORK_NOT_AVAILABLE.equals(msalCode)) {
+                code = TRANSIENT;
+            } else if (MsalClientException.NO_CURRENT_ACCOUNT.equals(msalCode)) {
+                code = NO_ACCOUNT;
+            }
+            return new PluginError(code, e.getMessage(), msalCode, 0);
+        }
+        if (e instanceof MsalException) {
+            return new PluginError(CLIENT_ERROR, e.getMessage(), ((MsalException) e).getErrorCode(), 0);
+        }
+        if (e instanceof JSONException || e instanceof MalformedURLException || e instanceof ProtocolException) {
+            return new PluginError(INVALID_ARGUMENT, e.getMessage());
+        }
+        return new PluginError(PLUGIN_ERROR, e.getMessage());
+    }
+
+    boolean isTransient() {
+        return TRANSIENT.equals(this.code);
+    }
+
+    /**
+     * Whether asking again can't succeed until the user signs in interactively or the accounts
+     * change.
+     */
+    boolean needsUser() {
+        return INTERACTION_REQUIRED.equals(this.code) || NO_ACCOUNT.equals(this.code);
+    }
+
+    void writeTo(JsonEncoder encoder) {
+        encoder.beginObject();
+        encoder.name("code").value(this.code);
+        encoder.name("message").value(this.message);
+        if (this.msalCode != null) {
+            encoder.name("msalCode").value(this.msalCode);
+        }
+        if (this.retryAfterMillis > 0) {
+            encoder.name("retryAfterMs").value(this.retryAfterMillis);
+        }
+        encoder.endObject();
+    }
+}
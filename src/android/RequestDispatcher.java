@@ -0,0 +1,117 @@
+package com.wrobins.cordova.plugin;
+
+import org.apache.cordova.CallbackContext;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks every in-flight plugin call by its id, enforces per-call deadlines and records how each
+ * one ended.
+ */
+final class RequestDispatcher {
+    static final String CANCELLED = "Request cancelled";
+
+    private volatile boolean structuredErrors = false;
+
+    private final ConcurrentHashMap<String, MsalRequest> inFlight = new ConcurrentHashMap<>();
+    private final MsalMetrics metrics;
+    private final ScheduledThreadPoolExecutor timers;
+
+    RequestDispatcher(MsalMetrics metrics) {
+        this.metrics = metrics;
+        this.timers = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "MsalTimers");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.timers.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Starts tracking a call. The id is the one JS passed, if any, so it can be cancelled later;
+     * otherwise the call's correlation id is used.
+     */
+    MsalRequest register(String action, String callId, CallbackContext callbackContext) {
+        MsalRequest request = new MsalRequest(this, action, callId, callbackContext);
+        this.inFlight.put(request.getId(), request);
+        return request;
+    }
+
+    /**
+     * Fails the request with a timeout error if it hasn't settled within the given time.
+     */
+    void setDeadline(final MsalRequest request, final long timeoutMillis) {
+        if (timeoutMillis <= 0 || this.timers.isShutdown()) {
+            return;
+        }
+        request.setDeadline(this.timers.schedule(new Runnable() {
+            @Override
+            public void run() {
+                request.abandon(new PluginError(PluginError.TIMEOUT, "Request timed out after " + timeoutMillis + " ms"));
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Fails the call with the given id as cancelled.
+     *
+     * @return false if no such call is in flight
+     */
+    boolean cancel(String id) {
+        MsalRequest request = this.inFlight.get(id);
+        return request != null && request.abandon(new PluginError(PluginError.CANCELLED, CANCELLED));
+    }
+
+    /**
+     * Whether errors go back to JS as {code, message} objects rather than bare messages.
+     */
+    void setStructuredErrors(boolean structuredErrors) {
+        this.structuredErrors = structuredErrors;
+    }
+
+    boolean usesStructuredErrors() {
+        return this.structuredErrors;
+    }
+
+    MsalRequest get(String id) {
+        return this.inFlight.get(id);
+    }
+
+    int size() {
+        return this.inFlight.size();
+    }
+
+    void remove(MsalRequest request) {
+        this.inFlight.remove(request.getId(), request);
+    }
+
+    void complete(MsalRequest request, boolean succeeded) {
+        this.remove(request);
+        MsalMetrics.Operation operation = this.metrics.get(request.getAction());
+        operation.total.recordSince(request.getStartedAt());
+        if (succeeded) {
+            operation.successes.incrementAndGet();
+        } else {
+            operation.errors.incrementAndGet();
+        }
+    }
+
+    /**
+     * Runs a short task after a delay on the timer thread, such as a backoff before a retry.
+     */
+    void schedule(Runnable task, long delayMillis) {
+        if (!this.timers.isShutdown()) {
+            this.timers.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    void shutdown() {
+        this.timers.shutdownNow();
+    }
+}
@@ -0,0 +1,68 @@
+package com.wrobins.cordova.plugin;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The parts of an auth result or account a caller asked for, so only those get encoded and
+ * cross the bridge. Built from a fields object like {idToken: false, account: true, claims:
+ * ['name']}; anything left out is included.
+ */
+final class ResultProjection {
+    static final ResultProjection ALL = new ResultProjection(true, true, true, null);
+
+    private final boolean idToken;
+    private final boolean account;
+    private final boolean claims;
+    // Only these claims when set
+    private final Set<String> claimNames;
+
+    private ResultProjection(boolean idToken, boolean account, boolean claims, Set<String> claimNames) {
+        this.idToken = idToken;
+        this.account = account;
+        this.claims = claims;
+        this.claimNames = claimNames;
+    }
+
+    static ResultProjection from(JSONObject fields) throws JSONException {
+        if (fields == null || fields.length() == 0) {
+            return ALL;
+        }
+        boolean claims = true;
+        Set<String> claimNames = null;
+        JSONArray claimsList = fields.optJSONArray("claims");
+        if (claimsList != null) {
+            claimNames = new HashSet<>();
+            for (int i = 0; i < claimsList.length(); ++i) {
+                claimNames.add(claimsList.getString(i));
+            }
+        } else {
+            claims = fields.optBoolean("claims", true);
+        }
+        return new ResultProjection(fields.optBoolean("idToken", true), fields.optBoolean("account", true), claims, claimNames);
+    }
+
+    boolean includesIdToken() {
+        return this.idToken;
+    }
+
+    boolean includesAccount() {
+        return this.account;
+    }
+
+    boolean includesClaims() {
+        return this.claims;
+    }
+
+    boolean includesAllClaims() {
+        return this.claims && this.claimNames == null;
+    }
+
+    boolean includesClaim(String name) {
+        return this.claims && (this.claimNames == null || this.claimNames.contains(name));
+    }
+}
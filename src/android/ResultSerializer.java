@@ -0,0 +1,129 @@
+package com.wrobins.cordova.plugin;
+
+import com.microsoft.identity.client.IAccount;
+import com.microsoft.identity.client.IAuthenticationResult;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes auth results and accounts as the JSON sent back to JS. The full encoding of each
+ * account is remembered for as long as its id token stays the same, since the claims can't
+ * change without a new id token, and spliced into later results as is.
+ */
+final class ResultSerializer {
+    private static final int MAX_ACCOUNTS = 32;
+
+    private final LinkedHashMap<String, CachedAccount> accounts = new LinkedHashMap<String, CachedAccount>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedAccount> eldest) {
+            return this.size() > MAX_ACCOUNTS;
+        }
+    };
+
+    String authResult(IAuthenticationResult result, ResultProjection projection) {
+        JsonEncoder encoder = JsonEncoder.obtain();
+        this.writeAuthResult(encoder, result, projection);
+        return encoder.finish();
+    }
+
+    String accounts(List<IAccount> accounts, ResultProjection projection) {
+        JsonEncoder encoder = JsonEncoder.obtain();
+        encoder.beginArray();
+        for (IAccount account : accounts) {
+            this.writeAccount(encoder, account, projection);
+        }
+        return encoder.endArray().finish();
+    }
+
+    void writeAuthResult(JsonEncoder encoder, IAuthenticationResult result, ResultProjection projection) {
+        encoder.beginObject();
+        encoder.name("token").value(result.getAccessToken());
+        if (projection.includesAccount()) {
+            encoder.name("account");
+            this.writeAccount(encoder, result.getAccount(), projection);
+        }
+        if (projection.includesIdToken() && result.getAccount().getIdToken() != null) {
+            encoder.name("idToken").value(result.getAccount().getIdToken());
+        }
+        encoder.endObject();
+    }
+
+    void writeAccount(JsonEncoder encoder, IAccount account, ResultProjection projection) {
+        if (projection.includesAllClaims()) {
+            encoder.raw(this.encodedAccount(account));
+            return;
+        }
+        encoder.beginObject();
+        encoder.name("id").value(account.getId());
+        if (account.getUsername() != null) {
+            encoder.name("username").value(account.getUsername());
+        }
+        if (projection.includesClaims()) {
+            encoder.name("claims");
+            writeClaims(encoder, account.getClaims(), projection);
+        }
+        encoder.endObject();
+    }
+
+    synchronized void clear() {
+        this.accounts.clear();
+    }
+
+    private String encodedAccount(IAccount account) {
+        String idToken = account.getIdToken();
+        if (idToken != null) {
+            synchronized (this) {
+                CachedAccount cached = this.accounts.get(account.getId());
+                if (cached != null && idToken.equals(cached.idToken)) {
+                    return cached.json;
+                }
+            }
+        }
+        // Built on its own encoder since this thread's is busy with the document it goes into
+        JsonEncoder encoder = new JsonEncoder();
+        encoder.beginObject();
+        encoder.name("id").value(account.getId());
+        if (account.getUsername() != null) {
+            encoder.name("username").value(account.getUsername());
+        }
+        encoder.name("claims");
+        writeClaims(encoder, account.getClaims(), ResultProjection.ALL);
+        String json = encoder.endObject().finish();
+        if (idToken != null) {
+            synchronized (this) {
+                this.accounts.put(account.getId(), new CachedAccount(idToken, json));
+            }
+        }
+        return json;
+    }
+
+    private static void writeClaims(JsonEncoder encoder, Map<String, ?> claims, ResultProjection projection) {
+        encoder.beginArray();
+        if (claims != null) {
+            for (Map.Entry<String, ?> claim : claims.entrySet()) {
+                if (!projection.includesClaim(claim.getKey())) {
+                    continue;
+                }
+                encoder.beginObject();
+                encoder.name("key").value(claim.getKey());
+                if (claim.getValue() != null) {
+                    encoder.name("value").value(claim.getValue());
+                }
+                encoder.endObject();
+            }
+        }
+        encoder.endArray();
+    }
+
+    private static final class CachedAccount {
+        final String idToken;
+        final String json;
+
+        CachedAccount(String idToken, String json) {
+            this.idToken = idToken;
+            this.json = json;
+        }
+    }
+}
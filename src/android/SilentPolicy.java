@@ -0,0 +1,145 @@
+package com.wrobins.cordova.plugin;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides what happens after a silent acquisition fails, so a flaky network or a throttling token
+ * endpoint isn't hammered by callers retrying straight away:
+ * <ul>
+ * <li>transient failures are retried natively with jittered exponential backoff;</li>
+ * <li>enough transient failures in a row against one authority open a circuit breaker, and
+ * calls to it fail fast until a cooldown has passed and a single probe gets through;</li>
+ * <li>failures from MSAL only the user can fix (interaction required, no account) are remembered
+ * per token and replayed without asking MSAL, until an interactive sign in or a change in the
+ * accounts clears them or, failing that, for ten minutes.</li>
+ * </ul>
+ */
+final class SilentPolicy {
+    static final int MAX_RETRIES = 2;
+    static final long BASE_BACKOFF_MILLIS = 500;
+    static final long MAX_BACKOFF_MILLIS = 8000;
+    static final int BREAKER_THRESHOLD = 5;
+    static final long BREAKER_COOLDOWN_MILLIS = 30 * 1000L;
+    // In case an account change happens where the plugin can't see it
+    static final long NEGATIVE_RESULT_MILLIS = 10 * 60 * 1000L;
+
+    private final HashMap<String, Breaker> breakers = new HashMap<>();
+    private final HashMap<String, NegativeResult> negativeResults = new HashMap<>();
+    // Ids of the accounts last read, or null before the first read
+    private Set<String> accountIds;
+
+    /**
+     * Returns the error to fail with straight away, or null if the call should go to MSAL.
+     */
+    synchronized PluginError check(String cacheKey, String authority) {
+        long now = System.currentTimeMillis();
+        NegativeResult negative = this.negativeResults.get(cacheKey);
+        if (negative != null) {
+            if (now < negative.expiresAt) {
+                return negative.error;
+            }
+            this.negativeResults.remove(cacheKey);
+        }
+        Breaker breaker = this.breakers.get(authority);
+        if (breaker == null || breaker.openUntil == 0) {
+            return null;
+        }
+        if (now < breaker.openUntil || now < breaker.probeUntil) {
+            long retryAfter = Math.max(Math.max(breaker.openUntil, breaker.probeUntil) - now, 1);
+            return new PluginError(PluginError.CIRCUIT_OPEN, "Too many failures reaching " + authority + ", try again later", null, retryAfter);
+        }
+        // Cooldown is over: let this one call through to see if things have recovered. If it never
+        // reports back, another gets through after a further cooldown.
+        breaker.probeUntil = now + BREAKER_COOLDOWN_MILLIS;
+        return null;
+    }
+
+    /**
+     * Returns how long to wait before retrying after the given failed attempt, counted from 0, or
+     * -1 if it shouldn't be retried.
+     */
+    synchronized long retryDelay(PluginError error, String authority, int attempt) {
+        Breaker breaker = this.breakers.get(authority);
+        if (!error.isTransient() || attempt >= MAX_RETRIES || (breaker != null && breaker.openUntil != 0)) {
+            return -1;
+        }
+        long backoff = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << attempt);
+        // Jittered, so callers that failed together don't retry together
+        return ThreadLocalRandom.current().nextLong(backoff / 2, backoff + 1);
+    }
+
+    synchronized void succeeded(String authority) {
+        this.breakers.remove(authority);
+    }
+
+    synchronized void failed(String cacheKey, String account, String authority, PluginError error) {
+        if (error.needsUser()) {
+            this.negativeResults.put(cacheKey, new NegativeResult(account, error, System.currentTimeMillis() + NEGATIVE_RESULT_MILLIS));
+        }
+        Breaker breaker = this.breakers.get(authority);
+        if (!error.isTransient()) {
+            if (breaker != null) {
+                // The endpoint answered, so it's reachable again
+                this.breakers.remove(authority);
+            }
+            return;
+        }
+        if (breaker == null) {
+            breaker = new Breaker();
+            this.breakers.put(authority, breaker);
+        }
+        breaker.probeUntil = 0;
+        if (++breaker.failures >= BREAKER_THRESHOLD) {
+            breaker.openUntil = System.currentTimeMillis() + BREAKER_COOLDOWN_MILLIS;
+        }
+    }
+
+    synchronized void clear() {
+        this.negativeResults.clear();
+    }
+
+    synchronized boolean hasNegativeResults() {
+        return !this.negativeResults.isEmpty();
+    }
+
+    /**
+     * Records the accounts just read. If they differ from the ones read before, whatever was
+     * remembered about them may no longer hold.
+     */
+    synchronized void accountsLoaded(Set<String> accountIds) {
+        if (!accountIds.equals(this.accountIds)) {
+            this.negativeResults.clear();
+            this.accountIds = accountIds;
+        }
+    }
+
+    synchronized void clearAccount(String account) {
+        Iterator<NegativeResult> results = this.negativeResults.values().iterator();
+        while (results.hasNext()) {
+            if (results.next().account.equals(account)) {
+                results.remove();
+            }
+        }
+    }
+
+    private static final class Breaker {
+        int failures;
+        long openUntil;
+        long probeUntil;
+    }
+
+    private static final class NegativeResult {
+        final String account;
+        final PluginError error;
+        final long expiresAt;
+
+        NegativeResult(String account, PluginError error, long expiresAt) {
+            this.account = account;
+            this.error = error;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
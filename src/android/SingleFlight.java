@@ -0,0 +1,57 @@
+package com.wrobins.cordova.plugin;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Groups callers waiting on the same piece of work so only the first one runs it and everyone
+ * shares its result.
+ */
+final class SingleFlight<T> {
+    private final HashMap<String, List<T>> waiting = new HashMap<>();
+
+    /**
+     * Adds a waiter for the given key.
+     *
+     * @return true if this waiter is the first one and should start the work
+     */
+    synchronized boolean join(String key, T waiter) {
+        List<T> waiters = this.waiting.get(key);
+        if (waiters != null) {
+            waiters.add(waiter);
+            return false;
+        }
+        waiters = new ArrayList<>();
+        waiters.add(waiter);
+        this.waiting.put(key, waiters);
+        return true;
+    }
+
+    /**
+     * Takes a waiter back out, for when its caller has given up. If it was the last one the key is
+     * dropped, so the next caller starts the work again instead of joining a call that may never
+     * finish; should that call finish after all, its result goes to whoever is waiting by then.
+     */
+    synchronized void leave(T waiter) {
+        Iterator<List<T>> flights = this.waiting.values().iterator();
+        while (flights.hasNext()) {
+            List<T> waiters = flights.next();
+            if (waiters.remove(waiter)) {
+                if (waiters.isEmpty()) {
+                    flights.remove();
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Ends the work for the given key and hands back everyone who was waiting on it.
+     */
+    synchronized List<T> complete(String key) {
+        List<T> waiters = this.waiting.remove(key);
+        return waiters != null ? waiters : new ArrayList<T>();
+    }
+}
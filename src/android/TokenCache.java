@@ -0,0 +1,133 @@
+package com.wrobins.cordova.plugin;
+
+import com.microsoft.identity.client.IAuthenticationResult;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Plugin-side cache of silent sign-in results, keyed by account, scope set and
+ * authority. Entries are served until a configurable skew before the access token expires and
+ * the least recently used entry is evicted once the cache is full.
+ */
+final class TokenCache {
+    interface EvictionListener {
+        void evicted(String key);
+    }
+
+    static final int DEFAULT_MAX_ENTRIES = 16;
+    static final long DEFAULT_EXPIRY_SKEW_MILLIS = 5 * 60 * 1000L;
+
+    private final LinkedHashMap<String, CachedResult> entries = new LinkedHashMap<String, CachedResult>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedResult> eldest) {
+            if (size() > TokenCache.this.maxEntries) {
+                TokenCache.this.listener.evicted(eldest.getKey());
+                return true;
+            }
+            return false;
+        }
+    };
+    private final EvictionListener listener;
+    private int maxEntries = DEFAULT_MAX_ENTRIES;
+    private long expirySkewMillis = DEFAULT_EXPIRY_SKEW_MILLIS;
+    private long generation = 0;
+
+    TokenCache(EvictionListener listener) {
+        this.listener = listener;
+    }
+
+    static String key(String account, String[] scopes, String authority) {
+        String[] normalized = new String[scopes.length];
+        for (int i = 0; i < scopes.length; ++i) {
+            normalized[i] = scopes[i].toLowerCase(Locale.ROOT);
+        }
+        Arrays.sort(normalized);
+        StringBuilder key = new StringBuilder(account).append('|');
+        for (String scope : normalized) {
+            key.append(scope).append(' ');
+        }
+        return key.append('|').append(authority).toString();
+    }
+
+    synchronized void configure(int maxEntries, long expirySkewMillis) {
+        maxEntries = Math.max(0, maxEntries);
+        expirySkewMillis = Math.max(0, expirySkewMillis);
+        if (maxEntries != this.maxEntries || expirySkewMillis != this.expirySkewMillis) {
+            this.maxEntries = maxEntries;
+            this.expirySkewMillis = expirySkewMillis;
+            this.clear();
+        }
+    }
+
+    synchronized IAuthenticationResult get(String key) {
+        CachedResult entry = this.entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresOn - this.expirySkewMillis <= System.currentTimeMillis()) {
+            this.entries.remove(key);
+            return null;
+        }
+        return entry.result;
+    }
+
+    /**
+     * Whether there is an entry for the key, without counting as a use of it.
+     */
+    synchronized boolean contains(String key) {
+        return this.entries.containsKey(key);
+    }
+
+    synchronized boolean isEmpty() {
+        return this.entries.isEmpty();
+    }
+
+    /**
+     * Returns a marker that must be passed back to {@link #put} so a result acquired before an
+     * invalidation can't be cached after it.
+     */
+    synchronized long generation() {
+        return this.generation;
+    }
+
+    /**
+     * @return true if the result was cached
+     */
+    synchronized boolean put(String key, IAuthenticationResult result, long expiresOn, long generation) {
+        if (this.maxEntries > 0 && generation == this.generation) {
+            this.entries.put(key, new CachedResult(result, expiresOn));
+            return true;
+        }
+        return false;
+    }
+
+    synchronized void invalidateAccount(String account) {
+        this.generation++;
+        String prefix = account + "|";
+        Iterator<String> keys = this.entries.keySet().iterator();
+        while (keys.hasNext()) {
+            if (keys.next().startsWith(prefix)) {
+                keys.remove();
+            }
+        }
+    }
+
+    synchronized void clear() {
+        this.generation++;
+        this.entries.clear();
+    }
+
+    private static final class CachedResult {
+        final IAuthenticationResult result;
+        final long expiresOn;
+
+        CachedResult(IAuthenticationResult result, long expiresOn) {
+            this.result = result;
+            this.expiresOn = expiresOn;
+        }
+    }
+}
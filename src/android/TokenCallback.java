@@ -0,0 +1,11 @@
+package com.wrobins.cordova.plugin;
+
+import com.microsoft.identity.client.IAuthenticationResult;
+
+/**
+ * Receives the outcome of a token acquisition, whether it was started from JS or by the plugin
+ * itself.
+ */
+interface TokenCallback extends ErrorCallback {
+    void success(IAuthenticationResult result);
+}
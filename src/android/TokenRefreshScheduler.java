@@ -0,0 +1,103 @@
+package com.wrobins.cordova.plugin;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Refreshes cached tokens in the background shortly before they expire, so a foreground
+ * signInSilent call finds a warm token instead of waiting on the network. Disabled until a lead
+ * time is configured.
+ */
+final class TokenRefreshScheduler {
+    static final long DEFAULT_JITTER_MILLIS = 60 * 1000L;
+    // Never schedule back-to-back refreshes for a token that keeps coming back close to expiry
+    private static final long MIN_DELAY_MILLIS = 30 * 1000L;
+
+    private final ScheduledThreadPoolExecutor executor;
+    private final HashMap<String, ScheduledFuture<?>> scheduled = new HashMap<>();
+    private long leadMillis = 0;
+    private long jitterMillis = DEFAULT_JITTER_MILLIS;
+
+    TokenRefreshScheduler() {
+        this.executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "MsalTokenRefresh");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.executor.setRemoveOnCancelPolicy(true);
+    }
+
+    synchronized void configure(long leadMillis, long jitterMillis) {
+        leadMillis = Math.max(0, leadMillis);
+        jitterMillis = Math.max(0, jitterMillis);
+        if (leadMillis != this.leadMillis || jitterMillis != this.jitterMillis) {
+            this.cancelAll();
+            this.leadMillis = leadMillis;
+            this.jitterMillis = jitterMillis;
+        }
+    }
+
+    /**
+     * Schedules a refresh for the given cache key ahead of its token's expiry, replacing any
+     * refresh already scheduled for it.
+     */
+    synchronized void schedule(final String key, long expiresOn, final Runnable refresh) {
+        if (this.leadMillis <= 0 || this.executor.isShutdown()) {
+            return;
+        }
+        long jitter = this.jitterMillis > 0 ? ThreadLocalRandom.current().nextLong(this.jitterMillis) : 0;
+        long delay = Math.max(MIN_DELAY_MILLIS, expiresOn - this.leadMillis - jitter - System.currentTimeMillis());
+        ScheduledFuture<?> previous = this.scheduled.put(key, this.executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (TokenRefreshScheduler.this) {
+                    TokenRefreshScheduler.this.scheduled.remove(key);
+                }
+                refresh.run();
+            }
+        }, delay, TimeUnit.MILLISECONDS));
+        if (previous != null) {
+            previous.cancel(false);
+        }
+    }
+
+    synchronized void cancel(String key) {
+        ScheduledFuture<?> future = this.scheduled.remove(key);
+        if (future != null) {
+            future.cancel(false);
+        }
+    }
+
+    synchronized void cancelAccount(String account) {
+        String prefix = account + "|";
+        Iterator<Map.Entry<String, ScheduledFuture<?>>> entries = this.scheduled.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<String, ScheduledFuture<?>> entry = entries.next();
+            if (entry.getKey().startsWith(prefix)) {
+                entry.getValue().cancel(false);
+                entries.remove();
+            }
+        }
+    }
+
+    synchronized void cancelAll() {
+        for (ScheduledFuture<?> future : this.scheduled.values()) {
+            future.cancel(false);
+        }
+        this.scheduled.clear();
+    }
+
+    synchronized void shutdown() {
+        this.cancelAll();
+        this.executor.shutdownNow();
+    }
+}
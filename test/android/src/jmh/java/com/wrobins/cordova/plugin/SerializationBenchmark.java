@@ -0,0 +1,104 @@
+package com.wrobins.cordova.plugin;
+
+import com.microsoft.identity.client.IAccount;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding a sign in result and an account list for JS: the JSONObject tree the plugin used to
+ * build, against the streaming encoder and the per-account cache that replaced it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SerializationBenchmark {
+    private FakeAuthenticationResult result;
+    private List<IAccount> accounts;
+    private ResultSerializer serializer;
+    private ResultProjection tokenOnly;
+
+    @Setup
+    public void setUp() throws JSONException {
+        FakeAccount account = new FakeAccount("00000000-0000-0000-66f3-3332eca7ea81", "user@example.com");
+        account.claim("roles", new ArrayList<>(Arrays.asList("Reader", "Writer", "Admin")));
+        this.result = FakeAuthenticationResult.expiringIn(3600000, account);
+        this.accounts = new ArrayList<>();
+        for (int i = 0; i < 5; ++i) {
+            this.accounts.add(new FakeAccount("account-" + i, "user" + i + "@example.com"));
+        }
+        this.serializer = new ResultSerializer();
+        this.tokenOnly = ResultProjection.from(new JSONObject("{\"account\":false,\"idToken\":false}"));
+    }
+
+    @Benchmark
+    public String authResultJsonObject() throws JSONException {
+        return jsonAuthResult(this.result).toString();
+    }
+
+    @Benchmark
+    public String authResultEncoder() {
+        return this.serializer.authResult(this.result, ResultProjection.ALL);
+    }
+
+    @Benchmark
+    public String authResultTokenOnly() {
+        return this.serializer.authResult(this.result, this.tokenOnly);
+    }
+
+    @Benchmark
+    public String accountsJsonObject() throws JSONException {
+        JSONArray array = new JSONArray();
+        for (IAccount account : this.accounts) {
+            array.put(jsonAccount(account));
+        }
+        return array.toString();
+    }
+
+    @Benchmark
+    public String accountsEncoder() {
+        return this.serializer.accounts(this.accounts, ResultProjection.ALL);
+    }
+
+    // What MsalPlugin built before the encoder
+    private static JSONObject jsonAuthResult(FakeAuthenticationResult result) throws JSONException {
+        JSONObject resultObj = new JSONObject();
+        resultObj.put("token", result.getAccessToken());
+        resultObj.put("account", jsonAccount(result.getAccount()));
+        resultObj.put("idToken", result.getAccount().getIdToken());
+        return resultObj;
+    }
+
+    private static JSONObject jsonAccount(IAccount account) throws JSONException {
+        JSONObject acct = new JSONObject();
+        acct.put("id", account.getId());
+        acct.put("username", account.getUsername());
+        JSONArray claimsArr = new JSONArray();
+        for (Map.Entry<String, ?> claim : account.getClaims().entrySet()) {
+            JSONObject claimObj = new JSONObject();
+            claimObj.put("key", claim.getKey());
+            if (claim.getValue() instanceof ArrayList) {
+                claimObj.put("value", new JSONArray((ArrayList<?>) claim.getValue()));
+            } else {
+                claimObj.put("value", claim.getValue());
+            }
+            claimsArr.put(claimObj);
+        }
+        acct.put("claims", claimsArr);
+        return acct;
+    }
+}
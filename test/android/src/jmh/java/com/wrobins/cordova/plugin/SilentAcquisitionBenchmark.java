@@ -0,0 +1,65 @@
+package com.wrobins.cordova.plugin;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The plain Java part of acquireTokenSilently under contention: the cache lookup that answers
+ * most calls, and the single-flight bookkeeping a miss goes through, from several threads at once
+ * the way Cordova's thread pool calls in.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(4)
+public class SilentAcquisitionBenchmark {
+    private static final String AUTHORITY = "https://login.microsoftonline.com/common";
+    private static final String[] SCOPES = {"User.Read", "Mail.Read"};
+
+    @Param({"1", "8"})
+    public int accounts;
+
+    private TokenCache cache;
+    private SingleFlight<Object> flights;
+    private String[] keys;
+
+    @Setup
+    public void setUp() {
+        this.cache = new TokenCache(new TokenCache.EvictionListener() {
+            @Override
+            public void evicted(String key) {
+            }
+        });
+        this.flights = new SingleFlight<>();
+        this.keys = new String[this.accounts];
+        for (int i = 0; i < this.accounts; ++i) {
+            FakeAuthenticationResult result = FakeAuthenticationResult.expiringIn(3600000, new FakeAccount("account-" + i, "user" + i + "@example.com"));
+            this.keys[i] = TokenCache.key(result.getAccount().getId(), SCOPES, AUTHORITY);
+            this.cache.put(this.keys[i], result, result.getExpiresOn().getTime(), this.cache.generation());
+        }
+    }
+
+    @Benchmark
+    public Object cacheHit() {
+        String account = this.keys.length == 1 ? "account-0" : "account-" + ThreadLocalRandom.current().nextInt(this.keys.length);
+        return this.cache.get(TokenCache.key(account, SCOPES, AUTHORITY));
+    }
+
+    @Benchmark
+    public List<Object> singleFlightMiss() {
+        String key = this.keys[ThreadLocalRandom.current().nextInt(this.keys.length)];
+        this.flights.join(key, new Object());
+        return this.flights.complete(key);
+    }
+}
@@ -0,0 +1,24 @@
+package android.util;
+
+/**
+ * Stand-in for Android's Base64, backed by java.util.Base64. Only the flags the plugin uses are
+ * supported.
+ */
+public class Base64 {
+    public static final int DEFAULT = 0;
+    public static final int NO_WRAP = 2;
+
+    public static byte[] decode(String str, int flags) {
+        try {
+            return java.util.Base64.getMimeDecoder().decode(str);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("bad base-64", e);
+        }
+    }
+
+    public static String encodeToString(byte[] input, int flags) {
+        return (flags & NO_WRAP) != 0
+                ? java.util.Base64.getEncoder().encodeToString(input)
+                : java.util.Base64.getMimeEncoder().encodeToString(input) + "\n";
+    }
+}
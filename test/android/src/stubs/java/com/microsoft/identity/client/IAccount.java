@@ -0,0 +1,20 @@
+package com.microsoft.identity.client;
+
+import java.util.Map;
+
+/**
+ * Stand-in for MSAL's IAccount.
+ */
+public interface IAccount {
+    String getId();
+
+    String getUsername();
+
+    Map<String, ?> getClaims();
+
+    String getIdToken();
+
+    String getTenantId();
+
+    String getAuthority();
+}
@@ -0,0 +1,25 @@
+package com.microsoft.identity.client;
+
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Stand-in for MSAL's IAuthenticationResult.
+ */
+public interface IAuthenticationResult {
+    String getAccessToken();
+
+    String getAuthorizationHeader();
+
+    String getAuthenticationScheme();
+
+    Date getExpiresOn();
+
+    String getTenantId();
+
+    IAccount getAccount();
+
+    String[] getScope();
+
+    UUID getCorrelationId();
+}
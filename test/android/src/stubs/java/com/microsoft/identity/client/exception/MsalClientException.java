@@ -0,0 +1,14 @@
+package com.microsoft.identity.client.exception;
+
+/**
+ * Stand-in for MSAL's MsalClientException, with the error codes the plugin looks at.
+ */
+public class MsalClientException extends MsalException {
+    public static final String IO_ERROR = "io_error";
+    public static final String DEVICE_NETWORK_NOT_AVAILABLE = "device_network_not_available";
+    public static final String NO_CURRENT_ACCOUNT = "no_current_account";
+
+    public MsalClientException(String errorCode, String errorMessage) {
+        super(errorCode, errorMessage);
+    }
+}
@@ -0,0 +1,17 @@
+package com.microsoft.identity.client.exception;
+
+/**
+ * Stand-in for MSAL's MsalException.
+ */
+public class MsalException extends Exception {
+    private final String errorCode;
+
+    public MsalException(String errorCode, String errorMessage) {
+        super(errorMessage);
+        this.errorCode = errorCode;
+    }
+
+    public String getErrorCode() {
+        return this.errorCode;
+    }
+}
@@ -0,0 +1,17 @@
+package com.microsoft.identity.client.exception;
+
+/**
+ * Stand-in for MSAL's MsalServiceException.
+ */
+public class MsalServiceException extends MsalException {
+    private final int httpStatusCode;
+
+    public MsalServiceException(String errorCode, String errorMessage, int httpStatusCode) {
+        super(errorCode, errorMessage);
+        this.httpStatusCode = httpStatusCode;
+    }
+
+    public int getHttpStatusCode() {
+        return this.httpStatusCode;
+    }
+}
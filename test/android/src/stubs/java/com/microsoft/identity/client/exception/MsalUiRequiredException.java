@@ -0,0 +1,13 @@
+package com.microsoft.identity.client.exception;
+
+/**
+ * Stand-in for MSAL's MsalUiRequiredException, with the error codes the plugin looks at.
+ */
+public class MsalUiRequiredException extends MsalServiceException {
+    public static final String INVALID_GRANT = "invalid_grant";
+    public static final String NO_ACCOUNT_FOUND = "no_account_found";
+
+    public MsalUiRequiredException(String errorCode, String errorMessage) {
+        super(errorCode, errorMessage, 0);
+    }
+}
@@ -0,0 +1,65 @@
+package org.apache.cordova;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stand-in for Cordova's CallbackContext. Instead of going to a webview, every result sent to it
+ * is kept so tests can check what JS would have received.
+ */
+public class CallbackContext {
+    private final String callbackId;
+    private final List<PluginResult> results = new ArrayList<>();
+    private boolean finished;
+
+    public CallbackContext(String callbackId) {
+        this.callbackId = callbackId;
+    }
+
+    public String getCallbackId() {
+        return this.callbackId;
+    }
+
+    public synchronized boolean isFinished() {
+        return this.finished;
+    }
+
+    public synchronized void sendPluginResult(PluginResult pluginResult) {
+        this.results.add(pluginResult);
+        this.finished = !pluginResult.getKeepCallback();
+    }
+
+    public void success() {
+        this.sendPluginResult(new PluginResult(PluginResult.Status.OK));
+    }
+
+    public void success(String message) {
+        this.sendPluginResult(new PluginResult(PluginResult.Status.OK, message));
+    }
+
+    public void success(JSONObject message) {
+        this.sendPluginResult(new PluginResult(PluginResult.Status.OK, message));
+    }
+
+    public void success(JSONArray message) {
+        this.sendPluginResult(new PluginResult(PluginResult.Status.OK, message));
+    }
+
+    public void error(String message) {
+        this.sendPluginResult(new PluginResult(PluginResult.Status.ERROR, message));
+    }
+
+    public void error(JSONObject message) {
+        this.sendPluginResult(new PluginResult(PluginResult.Status.ERROR, message));
+    }
+
+    /**
+     * Everything sent so far, oldest first.
+     */
+    public synchronized List<PluginResult> getResults() {
+        return new ArrayList<>(this.results);
+    }
+}
@@ -0,0 +1,224 @@
+package com.wrobins.cordova.plugin;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.ProtocolException;
+import java.net.ServerSocket;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AuthenticatedFetchTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private HttpServer server;
+    private String baseUrl;
+    private final List<String> authorizations = Collections.synchronizedList(new ArrayList<String>());
+    private RequestDispatcher dispatcher;
+    private LatencyHistogram serialization;
+
+    @Before
+    public void setUp() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0), 0);
+        // Turns down the stale token and echoes back whatever else it was sent
+        this.server.createContext("/api", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+                AuthenticatedFetchTest.this.authorizations.add(authorization);
+                String body = read(exchange.getRequestBody());
+                if ("Bearer stale".equals(authorization) || exchange.getRequestURI().getPath().endsWith("/revoked")) {
+                    respond(exchange, 401, "text/plain", "token rejected");
+                } else {
+                    respond(exchange, 200, "application/json; charset=utf-8", "{\"method\":\"" + exchange.getRequestMethod() + "\",\"body\":\"" + body + "\"}");
+                }
+            }
+        });
+        this.server.createContext("/redirect", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.getResponseHeaders().add("Location", "https://example.com/");
+                respond(exchange, 302, "text/plain", "");
+            }
+        });
+        this.server.start();
+        this.baseUrl = "http://127.0.0.1:" + this.server.getAddress().getPort();
+        this.dispatcher = new RequestDispatcher(new MsalMetrics());
+        this.dispatcher.setStructuredErrors(true);
+        this.serialization = new LatencyHistogram();
+    }
+
+    @After
+    public void tearDown() {
+        this.server.stop(0);
+        this.dispatcher.shutdown();
+    }
+
+    @Test
+    public void aRejectedTokenIsRetriedOnceWithAFreshOne() throws Exception {
+        AuthenticatedFetch fetch = new AuthenticatedFetch(new JSONObject().put("url", this.baseUrl + "/api").put("method", "post").put("body", "hello"));
+        CallbackContext callbackContext = new CallbackContext("fetch");
+        MsalRequest request = this.dispatcher.register("authenticatedFetch", "fetch", callbackContext);
+
+        assertFalse(fetch.attempt(request, "Bearer stale", false, this.serialization));
+        assertFalse(request.isSettled());
+        assertTrue(fetch.attempt(request, "Bearer fresh", true, this.serialization));
+
+        JSONObject response = this.response(callbackContext);
+        assertEquals(200, response.getInt("status"));
+        assertEquals("application/json; charset=utf-8", response.getJSONObject("headers").getString("content-type"));
+        JSONObject echoed = new JSONObject(response.getString("body"));
+        assertEquals("POST", echoed.getString("method"));
+        assertEquals("hello", echoed.getString("body"));
+        assertEquals(2, this.authorizations.size());
+        assertEquals("Bearer fresh", this.authorizations.get(1));
+        assertEquals(1, this.serialization.snapshot(false).getLong("count"));
+    }
+
+    @Test
+    public void aRejectionAfterRefreshingGoesBackToTheCaller() throws Exception {
+        AuthenticatedFetch fetch = new AuthenticatedFetch(new JSONObject().put("url", this.baseUrl + "/api/revoked"));
+        CallbackContext callbackContext = new CallbackContext("fetch");
+        MsalRequest request = this.dispatcher.register("authenticatedFetch", "fetch", callbackContext);
+
+        assertTrue(fetch.attempt(request, "Bearer fresh", true, this.serialization));
+
+        JSONObject response = this.response(callbackContext);
+        assertEquals(401, response.getInt("status"));
+        assertEquals("token rejected", response.getString("body"));
+    }
+
+    @Test
+    public void theCallersOwnAuthorizationHeaderIsNeverSent() throws Exception {
+        JSONObject headers = new JSONObject().put("authorization", "Bearer from-js").put("X-Trace", "1");
+        AuthenticatedFetch fetch = new AuthenticatedFetch(new JSONObject().put("url", this.baseUrl + "/api").put("headers", headers));
+        MsalRequest request = this.dispatcher.register("authenticatedFetch", "fetch", new CallbackContext("fetch"));
+
+        fetch.attempt(request, "Bearer plugin", false, this.serialization);
+
+        assertEquals(Collections.singletonList("Bearer plugin"), this.authorizations);
+    }
+
+    @Test
+    public void redirectsGoBackToTheCallerInsteadOfBeingFollowed() throws Exception {
+        AuthenticatedFetch fetch = new AuthenticatedFetch(new JSONObject().put("url", this.baseUrl + "/redirect"));
+        CallbackContext callbackContext = new CallbackContext("fetch");
+        MsalRequest request = this.dispatcher.register("authenticatedFetch", "fetch", callbackContext);
+
+        fetch.attempt(request, "Bearer plugin", false, this.serialization);
+
+        JSONObject response = this.response(callbackContext);
+        assertEquals(302, response.getInt("status"));
+        assertEquals("https://example.com/", response.getJSONObject("headers").getString("location"));
+    }
+
+    @Test
+    public void aFailedConnectionIsTransient() throws Exception {
+        ServerSocket socket = new ServerSocket(0, 0, InetAddress.getByName("127.0.0.1"));
+        int closedPort = socket.getLocalPort();
+        socket.close();
+        AuthenticatedFetch fetch = new AuthenticatedFetch(new JSONObject().put("url", "http://127.0.0.1:" + closedPort + "/api"));
+        CallbackContext callbackContext = new CallbackContext("fetch");
+        MsalRequest request = this.dispatcher.register("authenticatedFetch", "fetch", callbackContext);
+
+        assertTrue(fetch.attempt(request, "Bearer plugin", false, this.serialization));
+
+        assertEquals(PluginError.TRANSIENT, this.errorCode(callbackContext));
+    }
+
+    @Test
+    public void onlyHttpsOrHttpToThisDeviceIsAllowed() throws Exception {
+        this.assertRejected(new JSONObject().put("url", "http://example.com/api"), MalformedURLException.class);
+        this.assertRejected(new JSONObject().put("url", "http://127.attacker.example/api"), MalformedURLException.class);
+        this.assertRejected(new JSONObject().put("url", "http://127.0.0.1.attacker.example/api"), MalformedURLException.class);
+        this.assertRejected(new JSONObject().put("url", "ftp://127.0.0.1/file"), MalformedURLException.class);
+        this.assertRejected(new JSONObject().put("url", "not a url"), MalformedURLException.class);
+        this.assertRejected(new JSONObject().put("url", "https://example.com/api").put("method", "CONNECT"), ProtocolException.class);
+
+        new AuthenticatedFetch(new JSONObject().put("url", "https://example.com/api"));
+        new AuthenticatedFetch(new JSONObject().put("url", "http://localhost:8080/api"));
+        new AuthenticatedFetch(new JSONObject().put("url", "http://[::1]:8080/api"));
+    }
+
+    @Test
+    public void loopbackMeansALiteralLoopbackAddressOrLocalhost() {
+        assertTrue(AuthenticatedFetch.isLoopback("localhost"));
+        assertTrue(AuthenticatedFetch.isLoopback("LOCALHOST"));
+        assertTrue(AuthenticatedFetch.isLoopback("127.0.0.1"));
+        assertTrue(AuthenticatedFetch.isLoopback("127.255.10.1"));
+        assertTrue(AuthenticatedFetch.isLoopback("[::1]"));
+        assertTrue(AuthenticatedFetch.isLoopback("::1"));
+
+        assertFalse(AuthenticatedFetch.isLoopback("127.attacker.example"));
+        assertFalse(AuthenticatedFetch.isLoopback("127.0.0.1.attacker.example"));
+        assertFalse(AuthenticatedFetch.isLoopback("127.0.0"));
+        assertFalse(AuthenticatedFetch.isLoopback("127.0.0.256"));
+        assertFalse(AuthenticatedFetch.isLoopback("127.0.0.0001"));
+        assertFalse(AuthenticatedFetch.isLoopback("127..0.1"));
+        assertFalse(AuthenticatedFetch.isLoopback("128.0.0.1"));
+        assertFalse(AuthenticatedFetch.isLoopback("localhost.attacker.example"));
+        assertFalse(AuthenticatedFetch.isLoopback("example.com"));
+    }
+
+    private void assertRejected(JSONObject options, Class<? extends Exception> expected) throws Exception {
+        try {
+            new AuthenticatedFetch(options);
+            fail(options + " should have been rejected");
+        } catch (MalformedURLException | ProtocolException e) {
+            assertEquals(expected, e.getClass());
+            assertEquals(PluginError.INVALID_ARGUMENT, PluginError.from(e).code);
+        }
+    }
+
+    private JSONObject response(CallbackContext callbackContext) throws Exception {
+        PluginResult result = Concurrently.finalResult(callbackContext);
+        assertEquals(PluginResult.Status.OK.ordinal(), result.getStatus());
+        return new JSONObject(result.getMessage());
+    }
+
+    private String errorCode(CallbackContext callbackContext) throws Exception {
+        PluginResult result = Concurrently.finalResult(callbackContext);
+        assertEquals(PluginResult.Status.ERROR.ordinal(), result.getStatus());
+        return new JSONObject(result.getMessage()).getString("code");
+    }
+
+    private static String read(InputStream in) throws IOException {
+        StringBuilder contents = new StringBuilder();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            contents.append(new String(buffer, 0, read, UTF_8));
+        }
+        return contents.toString();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(bytes);
+        out.close();
+    }
+}
@@ -0,0 +1,97 @@
+package com.wrobins.cordova.plugin;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the same task on several threads released at once, for shaking out races, and a few checks
+ * shared by the stress tests.
+ */
+final class Concurrently {
+    interface Task {
+        void run(int thread) throws Exception;
+    }
+
+    private Concurrently() {
+    }
+
+    /**
+     * Runs the task on the given number of threads and rethrows the first failure, if any.
+     */
+    static void run(int threads, final Task task) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Throwable> failures = new ArrayList<>();
+        List<Thread> started = new ArrayList<>();
+        for (int i = 0; i < threads; ++i) {
+            final int thread = i;
+            Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        task.run(thread);
+                    } catch (Throwable e) {
+                        synchronized (failures) {
+                            failures.add(e);
+                        }
+                    }
+                }
+            }, "stress-" + i);
+            worker.start();
+            started.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : started) {
+            worker.join(TimeUnit.SECONDS.toMillis(30));
+            if (worker.isAlive()) {
+                throw new AssertionError(worker.getName() + " didn't finish");
+            }
+        }
+        if (!failures.isEmpty()) {
+            Throwable failure = failures.get(0);
+            if (failure instanceof Exception) {
+                throw (Exception) failure;
+            }
+            throw (Error) failure;
+        }
+    }
+
+    /**
+     * Returns the one result that ended the call, failing if there were none or several.
+     */
+    static PluginResult finalResult(CallbackContext callbackContext) {
+        PluginResult last = null;
+        for (PluginResult result : callbackContext.getResults()) {
+            if (!result.getKeepCallback()) {
+                if (last != null) {
+                    throw new AssertionError(callbackContext.getCallbackId() + " was answered more than once");
+                }
+                last = result;
+            }
+        }
+        if (last == null) {
+            throw new AssertionError(callbackContext.getCallbackId() + " was never answered");
+        }
+        return last;
+    }
+
+    /**
+     * Waits for every callback to be answered.
+     */
+    static void awaitFinished(List<CallbackContext> callbackContexts, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        for (CallbackContext callbackContext : callbackContexts) {
+            while (!callbackContext.isFinished()) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new AssertionError(callbackContext.getCallbackId() + " was never answered");
+                }
+                Thread.sleep(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.wrobins.cordova.plugin;
+
+import com.microsoft.identity.client.IAccount;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An account as MSAL would hand it back, with a realistic set of claims.
+ */
+final class FakeAccount implements IAccount {
+    private final String id;
+    private final String username;
+    private final String idToken;
+    private final Map<String, Object> claims = new LinkedHashMap<>();
+
+    FakeAccount(String id, String username) {
+        this(id, username, "id-token-" + id);
+    }
+
+    FakeAccount(String id, String username, String idToken) {
+        this.id = id;
+        this.username = username;
+        this.idToken = idToken;
+        this.claims.put("aud", "6c04f413-f6e7-4690-b372-dbdd083e7e5a");
+        this.claims.put("iss", "https://login.microsoftonline.com/72f988bf-86f1-41af-91ab-2d7cd011db47/v2.0");
+        this.claims.put("iat", 1700000000L);
+        this.claims.put("name", "Test User " + id);
+        this.claims.put("oid", id);
+        this.claims.put("preferred_username", username);
+        this.claims.put("tid", "72f988bf-86f1-41af-91ab-2d7cd011db47");
+        this.claims.put("ver", "2.0");
+    }
+
+    FakeAccount claim(String name, Object value) {
+        this.claims.put(name, value);
+        return this;
+    }
+
+    @Override
+    public String getId() {
+        return this.id;
+    }
+
+    @Override
+    public String getUsername() {
+        return this.username;
+    }
+
+    @Override
+    public Map<String, ?> getClaims() {
+        return this.claims;
+    }
+
+    @Override
+    public String getIdToken() {
+        return this.idToken;
+    }
+
+    @Override
+    public String getTenantId() {
+        return (String) this.claims.get("tid");
+    }
+
+    @Override
+    public String getAuthority() {
+        return "https://login.microsoftonline.com/common";
+    }
+}
@@ -0,0 +1,66 @@
+package com.wrobins.cordova.plugin;
+
+import com.microsoft.identity.client.IAccount;
+import com.microsoft.identity.client.IAuthenticationResult;
+
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * A silent or interactive sign in result as MSAL would hand it back.
+ */
+final class FakeAuthenticationResult implements IAuthenticationResult {
+    private final String accessToken;
+    private final IAccount account;
+    private final Date expiresOn;
+
+    FakeAuthenticationResult(String accessToken, IAccount account, long expiresOn) {
+        this.accessToken = accessToken;
+        this.account = account;
+        this.expiresOn = new Date(expiresOn);
+    }
+
+    static FakeAuthenticationResult expiringIn(long millis, IAccount account) {
+        return new FakeAuthenticationResult("access-token-" + UUID.randomUUID(), account, System.currentTimeMillis() + millis);
+    }
+
+    @Override
+    public String getAccessToken() {
+        return this.accessToken;
+    }
+
+    @Override
+    public String getAuthorizationHeader() {
+        return "Bearer " + this.accessToken;
+    }
+
+    @Override
+    public String getAuthenticationScheme() {
+        return "Bearer";
+    }
+
+    @Override
+    public Date getExpiresOn() {
+        return this.expiresOn;
+    }
+
+    @Override
+    public String getTenantId() {
+        return this.account.getTenantId();
+    }
+
+    @Override
+    public IAccount getAccount() {
+        return this.account;
+    }
+
+    @Override
+    public String[] getScope() {
+        return new String[] {"User.Read"};
+    }
+
+    @Override
+    public UUID getCorrelationId() {
+        return null;
+    }
+}
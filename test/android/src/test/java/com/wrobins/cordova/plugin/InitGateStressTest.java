@@ -0,0 +1,193 @@
+package com.wrobins.cordova.plugin;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class InitGateStressTest {
+    private static final int THREADS = 8;
+    private static final int CALLS = 200;
+
+    private RequestDispatcher dispatcher;
+    private InitGate gate;
+    private final List<CallbackContext> callbackContexts = Collections.synchronizedList(new ArrayList<CallbackContext>());
+
+    @Before
+    public void setUp() {
+        this.dispatcher = new RequestDispatcher(new MsalMetrics());
+        this.dispatcher.setStructuredErrors(true);
+        this.gate = new InitGate();
+    }
+
+    @After
+    public void tearDown() {
+        this.dispatcher.shutdown();
+    }
+
+    @Test
+    public void callsRacingInitRunOnceItIsReady() throws Exception {
+        this.gate.begin();
+        this.callWhileRunning(THREADS, new Runnable() {
+            @Override
+            public void run() {
+                InitGateStressTest.this.gate.ready();
+            }
+        });
+
+        this.assertEveryCall(PluginResult.Status.OK, null);
+    }
+
+    @Test
+    public void callsRacingInitFailWithItsError() throws Exception {
+        this.gate.begin();
+        this.callWhileRunning(THREADS, new Runnable() {
+            @Override
+            public void run() {
+                InitGateStressTest.this.gate.fail("bad config");
+            }
+        });
+
+        this.assertEveryCall(PluginResult.Status.ERROR, PluginError.INIT_FAILED);
+    }
+
+    @Test
+    public void callsOnlyFailOnceTheLastOfSeveralInitsHas() throws Exception {
+        this.gate.begin();
+        this.gate.begin();
+        this.callWhileRunning(THREADS, new Runnable() {
+            @Override
+            public void run() {
+                InitGateStressTest.this.gate.fail("first");
+                InitGateStressTest.this.gate.ready();
+            }
+        });
+
+        this.assertEveryCall(PluginResult.Status.OK, null);
+    }
+
+    @Test
+    public void callsDuringAPrewarmWaitForMsalInit() throws Exception {
+        this.gate.beginPrewarm();
+        this.callWhileRunning(THREADS, new Runnable() {
+            @Override
+            public void run() {
+                InitGateStressTest.this.gate.prewarmed();
+                InitGateStressTest.this.gate.begin();
+            }
+        });
+        for (CallbackContext callbackContext : this.callbackContexts) {
+            assertEquals(0, callbackContext.getResults().size());
+        }
+        this.gate.ready();
+
+        this.assertEveryCall(PluginResult.Status.OK, null);
+    }
+
+    @Test
+    public void aFailedPrewarmFailsTheCallsWaitingOnIt() throws Exception {
+        this.gate.beginPrewarm();
+        this.callWhileRunning(THREADS, new Runnable() {
+            @Override
+            public void run() {
+                InitGateStressTest.this.gate.prewarmFailed("no network");
+            }
+        });
+
+        // Calls made after it failed find nothing to wait for
+        int prewarmFailed = 0;
+        for (CallbackContext callbackContext : this.callbackContexts) {
+            PluginResult result = Concurrently.finalResult(callbackContext);
+            assertEquals(PluginResult.Status.ERROR.ordinal(), result.getStatus());
+            String code = new JSONObject(result.getMessage()).getString("code");
+            if (PluginError.PREWARM_FAILED.equals(code)) {
+                prewarmFailed++;
+            } else {
+                assertEquals(PluginError.NOT_INITIALIZED, code);
+            }
+        }
+        assertTrue(prewarmFailed >= THREADS * CALLS / 2);
+        assertEquals(0, this.dispatcher.size());
+    }
+
+    @Test
+    public void aFailedPrewarmLeavesCallsToAnMsalInitAlreadyRunning() throws Exception {
+        this.gate.beginPrewarm();
+        this.gate.begin();
+        this.callWhileRunning(THREADS, new Runnable() {
+            @Override
+            public void run() {
+                InitGateStressTest.this.gate.prewarmFailed("no network");
+            }
+        });
+        for (CallbackContext callbackContext : this.callbackContexts) {
+            assertEquals(0, callbackContext.getResults().size());
+        }
+        this.gate.ready();
+
+        this.assertEveryCall(PluginResult.Status.OK, null);
+    }
+
+    // Makes calls from several threads, with the given transition happening part way through
+    private void callWhileRunning(int threads, final Runnable transition) throws Exception {
+        final CountDownLatch halfway = new CountDownLatch(threads);
+        Thread transitioning = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    halfway.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                transition.run();
+            }
+        });
+        transitioning.start();
+        Concurrently.run(threads, new Concurrently.Task() {
+            @Override
+            public void run(int thread) {
+                for (int i = 0; i < CALLS; ++i) {
+                    if (i == CALLS / 2) {
+                        halfway.countDown();
+                    }
+                    InitGateStressTest.this.call(thread + "-" + i);
+                }
+            }
+        });
+        transitioning.join();
+    }
+
+    private void call(String id) {
+        CallbackContext callbackContext = new CallbackContext(id);
+        this.callbackContexts.add(callbackContext);
+        final MsalRequest request = this.dispatcher.register("signInSilent", id, callbackContext);
+        this.gate.whenReady(request, new Runnable() {
+            @Override
+            public void run() {
+                request.success();
+            }
+        });
+    }
+
+    private void assertEveryCall(PluginResult.Status status, String code) throws Exception {
+        assertEquals(THREADS * CALLS, this.callbackContexts.size());
+        for (CallbackContext callbackContext : this.callbackContexts) {
+            PluginResult result = Concurrently.finalResult(callbackContext);
+            assertEquals(status.ordinal(), result.getStatus());
+            if (code != null) {
+                assertEquals(code, new JSONObject(result.getMessage()).getString("code"));
+            }
+        }
+        assertEquals(0, this.dispatcher.size());
+    }
+}
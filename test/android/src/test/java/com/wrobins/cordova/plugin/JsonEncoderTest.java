@@ -0,0 +1,87 @@
+package com.wrobins.cordova.plugin;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JsonEncoderTest {
+    @Test
+    public void encodesNestedObjectsAndArrays() throws Exception {
+        String json = JsonEncoder.obtain()
+                .beginObject()
+                .name("string").value("text")
+                .name("number").value(42)
+                .name("fraction").value(1.5)
+                .name("whole").value(2.0)
+                .name("flag").value(true)
+                .name("missing").value((String) null)
+                .name("list").beginArray().value(1).beginObject().endObject().beginArray().endArray().endArray()
+                .endObject()
+                .finish();
+
+        assertEquals("{\"string\":\"text\",\"number\":42,\"fraction\":1.5,\"whole\":2,\"flag\":true,\"missing\":null,\"list\":[1,{},[]]}", json);
+    }
+
+    @Test
+    public void escapesEverythingJsCantTakeLiterally() throws Exception {
+        String text = "quote \" backslash \\ newline \n tab \t bell \u0007 separators    unicode é😀";
+        String json = JsonEncoder.obtain().beginArray().value(text).endArray().finish();
+
+        assertTrue(json.contains("\\u0007"));
+        assertTrue(json.contains("\\u2028\\u2029"));
+        assertEquals(text, new JSONArray(json).getString(0));
+    }
+
+    @Test
+    public void writesClaimValuesByType() throws Exception {
+        String json = JsonEncoder.obtain()
+                .beginObject()
+                .name("roles").value((Object) Arrays.asList("admin", "reader"))
+                .name("iat").value((Object) 1700000000L)
+                .name("verified").value((Object) Boolean.TRUE)
+                .name("other").value((Object) new StringBuilder("as text"))
+                .name("nan").value(Double.NaN)
+                .endObject()
+                .finish();
+        JSONObject decoded = new JSONObject(json);
+
+        assertEquals(new JSONArray("[\"admin\",\"reader\"]").toString(), decoded.getJSONArray("roles").toString());
+        assertEquals(1700000000L, decoded.getLong("iat"));
+        assertTrue(decoded.getBoolean("verified"));
+        assertEquals("as text", decoded.getString("other"));
+        assertTrue(decoded.isNull("nan"));
+    }
+
+    @Test
+    public void streamsReadersAsOneString() throws Exception {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 5000; ++i) {
+            body.append("line ").append(i).append(" \"quoted\"\n");
+        }
+        String json = JsonEncoder.obtain().beginObject().name("body").value(new StringReader(body.toString())).endObject().finish();
+
+        assertEquals(body.toString(), new JSONObject(json).getString("body"));
+    }
+
+    @Test
+    public void splicesRawJson() throws Exception {
+        String json = JsonEncoder.obtain().beginArray().raw("{\"a\":1}").raw("[2]").endArray().finish();
+
+        assertEquals("[{\"a\":1},[2]]", json);
+    }
+
+    @Test
+    public void aSeparateEncoderCanBuildADocumentInsideAnother() throws Exception {
+        JsonEncoder outer = JsonEncoder.obtain().beginObject().name("inner");
+        String inner = new JsonEncoder().beginObject().name("a").value(1).endObject().finish();
+        String json = outer.raw(inner).name("b").value(2).endObject().finish();
+
+        assertEquals("{\"inner\":{\"a\":1},\"b\":2}", json);
+    }
+}
@@ -0,0 +1,62 @@
+package com.wrobins.cordova.plugin;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+    @Test
+    public void percentilesAreWithinABucketOfTheRealValue() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        // 1 ms to 1000 ms, so the real p50 is 500 ms, p90 900 ms and p99 990 ms
+        for (int millis = 1; millis <= 1000; ++millis) {
+            histogram.record(millis * 1000000L);
+        }
+
+        JSONObject snapshot = histogram.snapshot(false);
+
+        assertEquals(1000, snapshot.getLong("count"));
+        assertEquals(500.5, snapshot.getDouble("meanMs"), 0.01);
+        assertWithinQuarter(500, snapshot.getDouble("p50Ms"));
+        assertWithinQuarter(900, snapshot.getDouble("p90Ms"));
+        assertWithinQuarter(990, snapshot.getDouble("p99Ms"));
+        assertEquals(1000, snapshot.getDouble("maxMs"), 0.001);
+    }
+
+    @Test
+    public void percentilesNeverExceedTheMaximum() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(3000000L);
+
+        assertEquals(3.0, histogram.snapshot(false).getDouble("p99Ms"), 0.001);
+    }
+
+    @Test
+    public void slowCallsLandInTheLastBucket() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(10 * 60 * 1000000000L);
+
+        JSONObject snapshot = histogram.snapshot(false);
+
+        assertEquals(1, snapshot.getLong("count"));
+        assertTrue(snapshot.getDouble("p50Ms") > 60000);
+    }
+
+    @Test
+    public void resetStartsOver() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000000L);
+        histogram.snapshot(true);
+
+        JSONObject snapshot = histogram.snapshot(false);
+
+        assertEquals(0, snapshot.getLong("count"));
+        assertEquals(0, snapshot.getDouble("maxMs"), 0);
+    }
+
+    private static void assertWithinQuarter(double expected, double actual) {
+        assertTrue("expected about " + expected + " but was " + actual, Math.abs(actual - expected) <= expected * 0.25);
+    }
+}
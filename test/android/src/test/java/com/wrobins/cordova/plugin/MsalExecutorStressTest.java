@@ -0,0 +1,155 @@
+package com.wrobins.cordova.plugin;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MsalExecutorStressTest {
+    private static final int QUEUE_DEPTH = 16;
+    private static final int THREADS = 8;
+    private static final int TASKS = 200;
+
+    private MsalExecutor executor;
+
+    @After
+    public void tearDown() {
+        if (this.executor != null) {
+            this.executor.shutdown();
+        }
+    }
+
+    @Test
+    public void aFullQueueTurnsAwayTheNewestLowestPriorityTask() throws Exception {
+        this.executor = new MsalExecutor("test", 1, 2);
+        CountDownLatch release = this.blockWorker();
+        final List<String> ran = Collections.synchronizedList(new ArrayList<String>());
+        final List<String> rejected = Collections.synchronizedList(new ArrayList<String>());
+
+        this.submit(MsalExecutor.BACKGROUND, "background-1", ran, rejected);
+        this.submit(MsalExecutor.BACKGROUND, "background-2", ran, rejected);
+        this.submit(MsalExecutor.FOREGROUND, "foreground", ran, rejected);
+        this.submit(MsalExecutor.BACKGROUND, "background-3", ran, rejected);
+        this.submit(MsalExecutor.INTERACTIVE, "interactive", ran, rejected);
+        release.countDown();
+        this.awaitSize(ran, 2);
+
+        assertEquals(Arrays.asList("interactive", "foreground"), ran);
+        assertEquals(Arrays.asList("background-2", "background-3", "background-1"), rejected);
+    }
+
+    @Test
+    public void everyTaskRunsOrIsRejectedExactlyOnce() throws Exception {
+        this.executor = new MsalExecutor("test", 1, QUEUE_DEPTH);
+        CountDownLatch release = this.blockWorker();
+        final AtomicIntegerArray outcomes = new AtomicIntegerArray(THREADS * TASKS);
+        final AtomicIntegerArray priorities = new AtomicIntegerArray(THREADS * TASKS);
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        final AtomicInteger interactiveRejected = new AtomicInteger();
+
+        Concurrently.run(THREADS, new Concurrently.Task() {
+            @Override
+            public void run(int thread) {
+                for (int i = 0; i < TASKS; ++i) {
+                    final int task = thread * TASKS + i;
+                    // Fewer interactive tasks than fit in the queue, so none of them should lose
+                    final int priority = task < QUEUE_DEPTH / 2 ? MsalExecutor.INTERACTIVE : (task % 2 == 0 ? MsalExecutor.FOREGROUND : MsalExecutor.BACKGROUND);
+                    priorities.set(task, priority);
+                    MsalExecutorStressTest.this.executor.execute(priority, new Runnable() {
+                        @Override
+                        public void run() {
+                            outcomes.incrementAndGet(task);
+                            order.add(task);
+                        }
+                    }, new ErrorCallback() {
+                        @Override
+                        public void error(PluginError error) {
+                            assertEquals(PluginError.REJECTED, error.code);
+                            outcomes.addAndGet(task, 100);
+                            if (priority == MsalExecutor.INTERACTIVE) {
+                                interactiveRejected.incrementAndGet();
+                            }
+                        }
+                    });
+                }
+            }
+        });
+        release.countDown();
+        this.awaitSize(order, QUEUE_DEPTH);
+        Thread.sleep(50);
+
+        assertEquals(QUEUE_DEPTH, order.size());
+        for (int task = 0; task < outcomes.length(); ++task) {
+            int outcome = outcomes.get(task);
+            assertTrue("task " + task + " ended " + outcome, outcome == 1 || outcome == 100);
+        }
+        assertEquals(0, interactiveRejected.get());
+        // Everything was queued before the worker was free, so it all ran in priority order
+        for (int i = 1; i < order.size(); ++i) {
+            assertTrue(priorities.get(order.get(i - 1)) <= priorities.get(order.get(i)));
+        }
+    }
+
+    @Test
+    public void tasksAfterShutdownAreRejected() throws Exception {
+        this.executor = new MsalExecutor("test", 1, QUEUE_DEPTH);
+        this.executor.shutdown();
+        final List<String> ran = Collections.synchronizedList(new ArrayList<String>());
+        final List<String> rejected = Collections.synchronizedList(new ArrayList<String>());
+
+        this.submit(MsalExecutor.INTERACTIVE, "late", ran, rejected);
+
+        assertEquals(Collections.singletonList("late"), rejected);
+        assertTrue(ran.isEmpty());
+    }
+
+    // Occupies the only worker thread until the returned latch is released
+    private CountDownLatch blockWorker() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        this.executor.execute(MsalExecutor.INTERACTIVE, new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, null);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        return release;
+    }
+
+    private void submit(int priority, final String name, final List<String> ran, final List<String> rejected) {
+        this.executor.execute(priority, new Runnable() {
+            @Override
+            public void run() {
+                ran.add(name);
+            }
+        }, new ErrorCallback() {
+            @Override
+            public void error(PluginError error) {
+                rejected.add(name);
+            }
+        });
+    }
+
+    private void awaitSize(List<?> list, int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (list.size() < size && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.wrobins.cordova.plugin;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MsalRequestStressTest {
+    private static final int THREADS = 6;
+    private static final int ROUNDS = 500;
+
+    private MsalMetrics metrics;
+    private RequestDispatcher dispatcher;
+
+    @Before
+    public void setUp() {
+        this.metrics = new MsalMetrics();
+        this.dispatcher = new RequestDispatcher(this.metrics);
+    }
+
+    @After
+    public void tearDown() {
+        this.dispatcher.shutdown();
+    }
+
+    @Test
+    public void racingRepliesSettleTheCallOnce() throws Exception {
+        for (int round = 0; round < ROUNDS; ++round) {
+            CallbackContext callbackContext = new CallbackContext("call-" + round);
+            final MsalRequest request = this.dispatcher.register("signInSilent", null, callbackContext);
+            final AtomicInteger abandonHandlers = new AtomicInteger();
+            request.onAbandoned(new Runnable() {
+                @Override
+                public void run() {
+                    abandonHandlers.incrementAndGet();
+                }
+            });
+            final AtomicInteger abandonedFirst = new AtomicInteger();
+
+            Concurrently.run(THREADS, new Concurrently.Task() {
+                @Override
+                public void run(int thread) throws Exception {
+                    switch (thread) {
+                        case 0:
+                            request.success();
+                            break;
+                        case 1:
+                            request.successJson("{\"token\":\"t\"}");
+                            break;
+                        case 2:
+                            request.error(new PluginError(PluginError.TRANSIENT, "network"));
+                            break;
+                        case 3:
+                            if (request.abandon(new PluginError(PluginError.TIMEOUT, "timed out"))) {
+                                abandonedFirst.incrementAndGet();
+                            }
+                            break;
+                        case 4:
+                            request.success(new JSONObject());
+                            break;
+                        default:
+                            PluginResult progress = new PluginResult(PluginResult.Status.OK, "progress");
+                            progress.setKeepCallback(true);
+                            request.sendPluginResult(progress);
+                    }
+                }
+            });
+
+            Concurrently.finalResult(callbackContext);
+            assertTrue(request.isSettled());
+            assertEquals(abandonedFirst.get(), abandonHandlers.get());
+        }
+        assertEquals(0, this.dispatcher.size());
+        JSONObject snapshot = this.metrics.snapshot(false).getJSONObject("signInSilent");
+        assertEquals(ROUNDS, snapshot.getLong("successes") + snapshot.getLong("errors"));
+    }
+
+    @Test
+    public void cleanupRegisteredAfterTheCallEndedRunsStraightAway() {
+        MsalRequest request = this.dispatcher.register("signInSilent", null, new CallbackContext("call"));
+        request.success();
+        final AtomicInteger ran = new AtomicInteger();
+
+        request.onAbandoned(new Runnable() {
+            @Override
+            public void run() {
+                ran.incrementAndGet();
+            }
+        });
+
+        assertEquals(1, ran.get());
+    }
+}
@@ -0,0 +1,119 @@
+package com.wrobins.cordova.plugin;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RequestDispatcherStressTest {
+    private static final int THREADS = 8;
+    private static final int CALLS = 250;
+
+    private MsalMetrics metrics;
+    private RequestDispatcher dispatcher;
+
+    @Before
+    public void setUp() {
+        this.metrics = new MsalMetrics();
+        this.dispatcher = new RequestDispatcher(this.metrics);
+        this.dispatcher.setStructuredErrors(true);
+    }
+
+    @After
+    public void tearDown() {
+        this.dispatcher.shutdown();
+    }
+
+    @Test
+    public void aCallEndsOnceWhetherItFinishesTimesOutOrIsCancelled() throws Exception {
+        final List<CallbackContext> callbackContexts = Collections.synchronizedList(new ArrayList<CallbackContext>());
+        final List<MsalRequest> requests = Collections.synchronizedList(new ArrayList<MsalRequest>());
+        final AtomicInteger abandoned = new AtomicInteger();
+
+        Concurrently.run(THREADS, new Concurrently.Task() {
+            @Override
+            public void run(int thread) throws Exception {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < CALLS; ++i) {
+                    String id = thread + "-" + i;
+                    CallbackContext callbackContext = new CallbackContext(id);
+                    callbackContexts.add(callbackContext);
+                    MsalRequest request = RequestDispatcherStressTest.this.dispatcher.register("signInSilent", id, callbackContext);
+                    requests.add(request);
+                    request.onAbandoned(new Runnable() {
+                        @Override
+                        public void run() {
+                            abandoned.incrementAndGet();
+                        }
+                    });
+                    RequestDispatcherStressTest.this.dispatcher.setDeadline(request, random.nextInt(1, 4));
+                    switch (random.nextInt(3)) {
+                        case 0:
+                            Thread.sleep(random.nextInt(3));
+                            request.success();
+                            break;
+                        case 1:
+                            RequestDispatcherStressTest.this.dispatcher.cancel(id);
+                            break;
+                        default:
+                            // Left for the deadline, or for a thread that finishes it late
+                    }
+                }
+            }
+        });
+        Concurrently.awaitFinished(callbackContexts, 5000);
+        // Work that finishes after its call was abandoned has its reply dropped
+        for (MsalRequest request : requests) {
+            request.success();
+        }
+
+        int succeeded = 0;
+        int timedOut = 0;
+        int cancelled = 0;
+        for (CallbackContext callbackContext : callbackContexts) {
+            PluginResult result = Concurrently.finalResult(callbackContext);
+            if (result.getStatus() == PluginResult.Status.OK.ordinal()) {
+                succeeded++;
+                continue;
+            }
+            String code = new JSONObject(result.getMessage()).getString("code");
+            if (PluginError.TIMEOUT.equals(code)) {
+                timedOut++;
+            } else {
+                assertEquals(PluginError.CANCELLED, code);
+                cancelled++;
+            }
+        }
+        assertEquals(THREADS * CALLS, succeeded + timedOut + cancelled);
+        assertTrue(timedOut > 0);
+        assertTrue(cancelled > 0);
+        assertEquals(timedOut + cancelled, abandoned.get());
+        assertEquals(0, this.dispatcher.size());
+        JSONObject snapshot = this.metrics.snapshot(false).getJSONObject("signInSilent");
+        assertEquals(succeeded, snapshot.getLong("successes"));
+        assertEquals(timedOut + cancelled, snapshot.getLong("errors"));
+        assertEquals(THREADS * CALLS, snapshot.getJSONObject("total").getLong("count"));
+    }
+
+    @Test
+    public void cancellingAnUnknownOrFinishedCallDoesNothing() {
+        CallbackContext callbackContext = new CallbackContext("call");
+        MsalRequest request = this.dispatcher.register("signInSilent", "call", callbackContext);
+        request.success();
+
+        assertEquals(false, this.dispatcher.cancel("call"));
+        assertEquals(false, this.dispatcher.cancel("missing"));
+        assertEquals(1, callbackContext.getResults().size());
+    }
+}
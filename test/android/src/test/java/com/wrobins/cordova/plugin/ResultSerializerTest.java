@@ -0,0 +1,56 @@
+package com.wrobins.cordova.plugin;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ResultSerializerTest {
+    private final ResultSerializer serializer = new ResultSerializer();
+
+    @Test
+    public void encodesTheSameShapeAsBefore() throws Exception {
+        FakeAccount account = new FakeAccount("id-1", "user@example.com");
+        FakeAuthenticationResult result = FakeAuthenticationResult.expiringIn(3600000, account);
+
+        JSONObject json = new JSONObject(this.serializer.authResult(result, ResultProjection.ALL));
+
+        assertEquals(result.getAccessToken(), json.getString("token"));
+        assertEquals("id-token-id-1", json.getString("idToken"));
+        assertEquals("id-1", json.getJSONObject("account").getString("id"));
+        assertEquals("user@example.com", json.getJSONObject("account").getString("username"));
+        JSONArray claims = json.getJSONObject("account").getJSONArray("claims");
+        assertEquals(account.getClaims().size(), claims.length());
+        assertEquals("aud", claims.getJSONObject(0).getString("key"));
+    }
+
+    @Test
+    public void leavesOutWhatTheProjectionDoesNotAskFor() throws Exception {
+        FakeAccount account = new FakeAccount("id-1", "user@example.com");
+        ResultProjection projection = ResultProjection.from(new JSONObject("{\"idToken\":false,\"claims\":[\"name\"]}"));
+
+        JSONObject json = new JSONObject(this.serializer.authResult(FakeAuthenticationResult.expiringIn(3600000, account), projection));
+
+        assertFalse(json.has("idToken"));
+        JSONArray claims = json.getJSONObject("account").getJSONArray("claims");
+        assertEquals(1, claims.length());
+        assertEquals("name", claims.getJSONObject(0).getString("key"));
+    }
+
+    @Test
+    public void reusesAnAccountsEncodingUntilItsIdTokenChanges() throws Exception {
+        String first = this.serializer.accounts(Arrays.<com.microsoft.identity.client.IAccount>asList(new FakeAccount("id-1", "user@example.com", "token-1")), ResultProjection.ALL);
+        String again = this.serializer.accounts(Arrays.<com.microsoft.identity.client.IAccount>asList(new FakeAccount("id-1", "user@example.com", "token-1").claim("name", "Renamed")), ResultProjection.ALL);
+        String changed = this.serializer.accounts(Arrays.<com.microsoft.identity.client.IAccount>asList(new FakeAccount("id-1", "user@example.com", "token-2").claim("name", "Renamed")), ResultProjection.ALL);
+
+        assertEquals(first, again);
+        assertTrue(changed.contains("Renamed"));
+        assertSame(1, new JSONArray(changed).length());
+    }
+}
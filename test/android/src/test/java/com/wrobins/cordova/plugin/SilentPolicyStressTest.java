@@ -0,0 +1,99 @@
+package com.wrobins.cordova.plugin;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SilentPolicyStressTest {
+    private static final String AUTHORITY = "https://login.microsoftonline.com/common";
+    private static final PluginError TRANSIENT = new PluginError(PluginError.TRANSIENT, "network");
+    private static final PluginError INTERACTION_REQUIRED = new PluginError(PluginError.INTERACTION_REQUIRED, "consent");
+
+    @Test
+    public void theBreakerOpensAtTheThresholdUnderConcurrentFailures() throws Exception {
+        final SilentPolicy policy = new SilentPolicy();
+        final int threads = SilentPolicy.BREAKER_THRESHOLD - 1;
+
+        Concurrently.run(threads, new Concurrently.Task() {
+            @Override
+            public void run(int thread) {
+                policy.failed("key-" + thread, "account", AUTHORITY, TRANSIENT);
+            }
+        });
+        assertNull(policy.check("key", AUTHORITY));
+
+        policy.failed("key", "account", AUTHORITY, TRANSIENT);
+        final AtomicInteger open = new AtomicInteger();
+        Concurrently.run(8, new Concurrently.Task() {
+            @Override
+            public void run(int thread) {
+                for (int i = 0; i < 1000; ++i) {
+                    PluginError error = policy.check("key-" + i, AUTHORITY);
+                    assertNotNull(error);
+                    assertEquals(PluginError.CIRCUIT_OPEN, error.code);
+                    open.incrementAndGet();
+                }
+            }
+        });
+
+        assertEquals(8000, open.get());
+        assertEquals(-1, policy.retryDelay(TRANSIENT, AUTHORITY, 0));
+        assertNull(policy.check("key", "https://login.microsoftonline.com/organizations"));
+    }
+
+    @Test
+    public void aSuccessClosesTheBreakerForEveryone() throws Exception {
+        final SilentPolicy policy = new SilentPolicy();
+        for (int i = 0; i < SilentPolicy.BREAKER_THRESHOLD; ++i) {
+            policy.failed("key", "account", AUTHORITY, TRANSIENT);
+        }
+
+        Concurrently.run(8, new Concurrently.Task() {
+            @Override
+            public void run(int thread) {
+                if (thread == 0) {
+                    policy.succeeded(AUTHORITY);
+                    return;
+                }
+                for (int i = 0; i < 1000; ++i) {
+                    policy.check("key", AUTHORITY);
+                }
+            }
+        });
+
+        assertNull(policy.check("key", AUTHORITY));
+        long delay = policy.retryDelay(TRANSIENT, AUTHORITY, 0);
+        assertTrue(delay >= SilentPolicy.BASE_BACKOFF_MILLIS / 2 && delay <= SilentPolicy.BASE_BACKOFF_MILLIS);
+    }
+
+    @Test
+    public void rememberedFailuresLastUntilTheAccountsChange() throws Exception {
+        final SilentPolicy policy = new SilentPolicy();
+        policy.accountsLoaded(new HashSet<>(Arrays.asList("a", "b")));
+        Concurrently.run(8, new Concurrently.Task() {
+            @Override
+            public void run(int thread) {
+                for (int i = 0; i < 100; ++i) {
+                    policy.failed("key-" + thread + "-" + i, "a", AUTHORITY, INTERACTION_REQUIRED);
+                }
+            }
+        });
+
+        assertEquals(PluginError.INTERACTION_REQUIRED, policy.check("key-3-7", AUTHORITY).code);
+        // Only the user can fix it, so there's no point retrying
+        assertEquals(-1, policy.retryDelay(INTERACTION_REQUIRED, AUTHORITY, 0));
+
+        policy.accountsLoaded(new HashSet<>(Arrays.asList("b", "a")));
+        assertEquals(PluginError.INTERACTION_REQUIRED, policy.check("key-3-7", AUTHORITY).code);
+
+        policy.accountsLoaded(new HashSet<>(Arrays.asList("a")));
+        assertNull(policy.check("key-3-7", AUTHORITY));
+    }
+}
@@ -0,0 +1,75 @@
+package com.wrobins.cordova.plugin;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SingleFlightStressTest {
+    private static final int THREADS = 8;
+    private static final int CALLS = 5000;
+    private static final String[] KEYS = {"a", "b", "c"};
+
+    @Test
+    public void everyWaiterHearsBackOnceAndEachFlightHasOneStarter() throws Exception {
+        final SingleFlight<AtomicInteger> flights = new SingleFlight<>();
+        final List<List<AtomicInteger>> waiters = new ArrayList<>();
+        final List<List<AtomicInteger>> leavers = new ArrayList<>();
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger overlapping = new AtomicInteger();
+        for (int i = 0; i < THREADS; ++i) {
+            waiters.add(new ArrayList<AtomicInteger>());
+            leavers.add(new ArrayList<AtomicInteger>());
+        }
+
+        Concurrently.run(THREADS, new Concurrently.Task() {
+            @Override
+            public void run(int thread) {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < CALLS; ++i) {
+                    String key = KEYS[random.nextInt(KEYS.length)];
+                    AtomicInteger waiter = new AtomicInteger();
+                    if (flights.join(key, waiter)) {
+                        if (key.equals("a") && running.incrementAndGet() > 1) {
+                            overlapping.incrementAndGet();
+                        }
+                        Thread.yield();
+                        if (key.equals("a")) {
+                            running.decrementAndGet();
+                        }
+                        for (AtomicInteger joined : flights.complete(key)) {
+                            joined.incrementAndGet();
+                        }
+                        waiters.get(thread).add(waiter);
+                    } else if (random.nextInt(10) == 0) {
+                        flights.leave(waiter);
+                        leavers.get(thread).add(waiter);
+                    } else {
+                        waiters.get(thread).add(waiter);
+                    }
+                }
+            }
+        });
+
+        assertEquals(0, overlapping.get());
+        for (List<AtomicInteger> threadWaiters : waiters) {
+            for (AtomicInteger waiter : threadWaiters) {
+                assertEquals(1, waiter.get());
+            }
+        }
+        // Whoever left may have been answered before they could
+        for (List<AtomicInteger> threadLeavers : leavers) {
+            for (AtomicInteger leaver : threadLeavers) {
+                assertTrue(leaver.get() <= 1);
+            }
+        }
+        for (String key : KEYS) {
+            assertTrue(flights.complete(key).isEmpty());
+        }
+    }
+}
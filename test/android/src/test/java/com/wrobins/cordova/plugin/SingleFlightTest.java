@@ -0,0 +1,46 @@
+package com.wrobins.cordova.plugin;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SingleFlightTest {
+    private final SingleFlight<String> flights = new SingleFlight<>();
+
+    @Test
+    public void onlyTheFirstWaiterStartsTheWork() {
+        assertTrue(this.flights.join("key", "first"));
+        assertFalse(this.flights.join("key", "second"));
+        assertTrue(this.flights.join("other", "third"));
+
+        assertEquals(Arrays.asList("first", "second"), this.flights.complete("key"));
+        assertEquals(Arrays.asList("third"), this.flights.complete("other"));
+    }
+
+    @Test
+    public void completingEndsTheFlight() {
+        this.flights.join("key", "first");
+        this.flights.complete("key");
+
+        assertTrue(this.flights.complete("key").isEmpty());
+        assertTrue(this.flights.join("key", "second"));
+    }
+
+    @Test
+    public void theLastWaiterLeavingLetsTheNextCallerStartOver() {
+        this.flights.join("key", "first");
+        this.flights.join("key", "second");
+
+        this.flights.leave("first");
+        assertFalse(this.flights.join("key", "third"));
+        this.flights.leave("second");
+        this.flights.leave("third");
+
+        assertTrue(this.flights.join("key", "fourth"));
+        assertEquals(Arrays.asList("fourth"), this.flights.complete("key"));
+    }
+}
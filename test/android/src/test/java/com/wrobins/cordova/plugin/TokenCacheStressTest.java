@@ -0,0 +1,67 @@
+package com.wrobins.cordova.plugin;
+
+import com.microsoft.identity.client.IAuthenticationResult;
+
+import org.junit.Test;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertTrue;
+
+public class TokenCacheStressTest {
+    private static final int WRITERS = 6;
+    private static final int KEYS = 32;
+
+    @Test
+    public void nothingAcquiredBeforeAnInvalidationSurvivesIt() throws Exception {
+        final TokenCache cache = new TokenCache(new TokenCache.EvictionListener() {
+            @Override
+            public void evicted(String key) {
+            }
+        });
+        cache.configure(KEYS * WRITERS, TokenCache.DEFAULT_EXPIRY_SKEW_MILLIS);
+        final AtomicBoolean stop = new AtomicBoolean();
+        final long[] lastCleared = new long[1];
+
+        Concurrently.run(WRITERS + 1, new Concurrently.Task() {
+            @Override
+            public void run(int thread) throws Exception {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                if (thread == WRITERS) {
+                    // Invalidates while the writers are mid-acquisition, then lets them wind down
+                    for (int i = 0; i < 2000; ++i) {
+                        if (random.nextBoolean()) {
+                            cache.clear();
+                        } else {
+                            cache.invalidateAccount("account-" + random.nextInt(KEYS));
+                        }
+                    }
+                    cache.clear();
+                    lastCleared[0] = cache.generation();
+                    stop.set(true);
+                    return;
+                }
+                while (!stop.get()) {
+                    // Stands in for a silent acquisition that began before an invalidation and
+                    // finishes after it
+                    long generation = cache.generation();
+                    Thread.yield();
+                    String account = "account-" + random.nextInt(KEYS);
+                    FakeAuthenticationResult result = new FakeAuthenticationResult(Long.toString(generation), new FakeAccount(account, account + "@example.com"), System.currentTimeMillis() + 3600000);
+                    cache.put(TokenCache.key(account, new String[] {"User.Read"}, "authority" + thread), result, result.getExpiresOn().getTime(), generation);
+                }
+            }
+        });
+
+        for (int thread = 0; thread < WRITERS; ++thread) {
+            for (int i = 0; i < KEYS; ++i) {
+                IAuthenticationResult cached = cache.get(TokenCache.key("account-" + i, new String[] {"User.Read"}, "authority" + thread));
+                if (cached != null) {
+                    long generation = Long.parseLong(cached.getAccessToken());
+                    assertTrue("cached from generation " + generation + " after " + lastCleared[0], generation >= lastCleared[0]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.wrobins.cordova.plugin;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TokenCacheTest {
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final String AUTHORITY = "https://login.microsoftonline.com/common";
+
+    private final List<String> evicted = new ArrayList<>();
+    private TokenCache cache;
+
+    @Before
+    public void setUp() {
+        this.cache = new TokenCache(new TokenCache.EvictionListener() {
+            @Override
+            public void evicted(String key) {
+                TokenCacheTest.this.evicted.add(key);
+            }
+        });
+    }
+
+    @Test
+    public void keyIgnoresScopeOrderAndCase() {
+        assertEquals(
+                TokenCache.key("account", new String[] {"User.Read", "Mail.Read"}, AUTHORITY),
+                TokenCache.key("account", new String[] {"mail.read", "USER.READ"}, AUTHORITY));
+    }
+
+    @Test
+    public void servesUntilTheExpirySkew() {
+        FakeAuthenticationResult fresh = FakeAuthenticationResult.expiringIn(HOUR, new FakeAccount("a", "a@example.com"));
+        FakeAuthenticationResult expiring = FakeAuthenticationResult.expiringIn(TokenCache.DEFAULT_EXPIRY_SKEW_MILLIS - 1000, new FakeAccount("b", "b@example.com"));
+        this.cache.put("fresh", fresh, fresh.getExpiresOn().getTime(), this.cache.generation());
+        this.cache.put("expiring", expiring, expiring.getExpiresOn().getTime(), this.cache.generation());
+
+        assertSame(fresh, this.cache.get("fresh"));
+        assertNull(this.cache.get("expiring"));
+        assertFalse(this.cache.contains("expiring"));
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsedEntry() {
+        this.cache.configure(2, TokenCache.DEFAULT_EXPIRY_SKEW_MILLIS);
+        this.put("one");
+        this.put("two");
+        this.cache.get("one");
+        this.put("three");
+
+        assertTrue(this.cache.contains("one"));
+        assertFalse(this.cache.contains("two"));
+        assertTrue(this.cache.contains("three"));
+        assertEquals(1, this.evicted.size());
+        assertEquals("two", this.evicted.get(0));
+    }
+
+    @Test
+    public void refusesResultsAcquiredBeforeAnInvalidation() {
+        long generation = this.cache.generation();
+        this.cache.clear();
+        FakeAuthenticationResult result = FakeAuthenticationResult.expiringIn(HOUR, new FakeAccount("a", "a@example.com"));
+
+        assertFalse(this.cache.put("key", result, result.getExpiresOn().getTime(), generation));
+        assertNull(this.cache.get("key"));
+    }
+
+    @Test
+    public void invalidatesOnlyTheGivenAccount() {
+        String first = TokenCache.key("first", new String[] {"User.Read"}, AUTHORITY);
+        String second = TokenCache.key("second", new String[] {"User.Read"}, AUTHORITY);
+        this.put(first);
+        this.put(second);
+
+        this.cache.invalidateAccount("first");
+
+        assertFalse(this.cache.contains(first));
+        assertTrue(this.cache.contains(second));
+    }
+
+    @Test
+    public void sizeZeroTurnsTheCacheOff() {
+        this.cache.configure(0, TokenCache.DEFAULT_EXPIRY_SKEW_MILLIS);
+        FakeAuthenticationResult result = FakeAuthenticationResult.expiringIn(HOUR, new FakeAccount("a", "a@example.com"));
+
+        assertFalse(this.cache.put("key", result, result.getExpiresOn().getTime(), this.cache.generation()));
+        assertTrue(this.cache.isEmpty());
+    }
+
+    private void put(String key) {
+        FakeAuthenticationResult result = FakeAuthenticationResult.expiringIn(HOUR, new FakeAccount(key, key + "@example.com"));
+        assertTrue(this.cache.put(key, result, result.getExpiresOn().getTime(), this.cache.generation()));
+    }
+}
@@ -76,15 +76,50 @@ module.exports = {
         }
     },
     startLogger: function(updateCallback, errorCallback, containsPII = false, logLevel = 'VERBOSE') {
-        cordova.exec(updateCallback, errorCallback, 'MsalPlugin', 'startLogger', [containsPII, logLevel]);
+        // Android sends entries in batches; hand them to the callback one at a time like iOS does
+        var onUpdate = function(update) {
+            if (update && Array.isArray(update.entries)) {
+                if (update.dropped > 0) {
+                    updateCallback({
+                        timestamp: '',
+                        threadId: 0,
+                        correlationId: 'UNSET',
+                        logLevel: 'WARNING',
+                        containsPII: false,
+                        message: 'Dropped ' + update.dropped + ' log entries because they arrived faster than they could be delivered'
+                    });
+                }
+                for (var i = 0; i < update.entries.length; i++) {
+                    updateCallback(update.entries[i]);
+                }
+            } else {
+                updateCallback(update);
+            }
+        };
+        cordova.exec(onUpdate, errorCallback, 'MsalPlugin', 'startLogger', [containsPII, logLevel]);
+    },
+    startFileLogger: function(successCallback, errorCallback, options) {
+        cordova.exec(successCallback, errorCallback, 'MsalPlugin', 'startFileLogger', [options || {}]);
+    },
+    getLogFiles: function(successCallback, errorCallback, compact = false) {
+        cordova.exec(successCallback, errorCallback, 'MsalPlugin', 'getLogFiles', [compact]);
+    },
+    getMetrics: function(successCallback, errorCallback, reset = false) {
+        cordova.exec(successCallback, errorCallback, 'MsalPlugin', 'getMetrics', [reset]);
+    },
+    getAccounts: function(successCallback, errorCallback, fields, callOptions) {
+        cordova.exec(successCallback, errorCallback, 'MsalPlugin', 'getAccounts', [fields || null, callOptions || null]);
     },
-    getAccounts: function(successCallback, errorCallback) {
-        cordova.exec(successCallback, errorCallback, 'MsalPlugin', 'getAccounts', []);
+    signInSilent: function(successCallback, errorCallback, account, fields, callOptions, authority) {
+        cordova.exec(successCallback, errorCallback, 'MsalPlugin', 'signInSilent', [account, fields || null, callOptions || null, authority || '']);
     },
-    signInSilent: function(successCallback, errorCallback, account) {
-        cordova.exec(successCallback, errorCallback, 'MsalPlugin', 'signInSilent', [account]);
+    authenticatedFetch: function(successCallback, errorCallback, request, account, callOptions) {
+        cordova.exec(successCallback, errorCallback, 'MsalPlugin', 'authenticatedFetch', [request, account || '', callOptions || null]);
     },
-    signInInteractive: function(successCallback, errorCallback, signInOptions) {
+    acquireTokensBatch: function(successCallback, errorCallback, entries, callOptions) {
+        cordova.exec(successCallback, errorCallback, 'MsalPlugin', 'acquireTokensBatch', [entries || [], callOptions || null]);
+    },
+    signInInteractive: function(successCallback, errorCallback, signInOptions, callOptions) {
         if (typeof(signInOptions) === 'undefined') {
             signInOptions = {};
         }
@@ -93,11 +128,28 @@ module.exports = {
             typeof(signInOptions.prompt !== 'undefined') ? signInOptions.prompt : '',
             typeof(signInOptions.authorizationQueryStringParameters) !== 'undefined' ? signInOptions.authorizationQueryStringParameters : [],
             typeof(signInOptions.otherScopesToAuthorize) !== 'undefined' ? signInOptions.otherScopesToAuthorize : [],
-            typeof(signInOptions.webViewType) !== 'undefined' ? signInOptions.webViewType : ''
+            typeof(signInOptions.webViewType) !== 'undefined' ? signInOptions.webViewType : '',
+            callOptions || null,
+            typeof(signInOptions.authority) !== 'undefined' ? signInOptions.authority : ''
         ];
         cordova.exec(successCallback, errorCallback, 'MsalPlugin', 'signInInteractive', opts);
     },
-    signOut: function(successCallback, errorCallback, account) {
-        cordova.exec(successCallback, errorCallback, 'MsalPlugin', 'signOut', [account]);
+    prepareInteractive: function(successCallback, errorCallback, authority) {
+        cordova.exec(successCallback, errorCallback, 'MsalPlugin', 'prepareInteractive', [authority || '']);
+    },
+    signOut: function(successCallback, errorCallback, account, callOptions) {
+        cordova.exec(successCallback, errorCallback, 'MsalPlugin', 'signOut', [account, callOptions || null]);
+    },
+    getCachedAccounts: function(successCallback, errorCallback) {
+        cordova.exec(successCallback, errorCallback, 'MsalPlugin', 'getCachedAccounts', []);
+    },
+    watchAccounts: function(eventCallback, errorCallback) {
+        cordova.exec(eventCallback, errorCallback, 'MsalPlugin', 'watchAccounts', []);
+    },
+    unwatchAccounts: function(successCallback, errorCallback) {
+        cordova.exec(successCallback, errorCallback, 'MsalPlugin', 'unwatchAccounts', []);
+    },
+    cancel: function(successCallback, errorCallback, id) {
+        cordova.exec(successCallback, errorCallback, 'MsalPlugin', 'cancel', [id]);
     }
 };
\ No newline at end of file